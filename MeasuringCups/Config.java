@@ -1,10 +1,19 @@
 public class Config {
 	public static final String BFS = "BFS";
 	public static final String DFS = "DFS";
+	public static final String PACKED_BFS = "PACKED_BFS";
+	public static final String PACKED_DFS = "PACKED_DFS";
+	public static final String BIBFS = "BIBFS";
+	public static final String ASTAR = "ASTAR";
+	public static final String PARALLEL_BFS = "PARALLEL_BFS";
+	public static final String UCS = "UCS";
+	public static final String IDDFS = "IDDFS";
+	public static final String EXTERNAL_BFS = "EXTERNAL_BFS";
+	public static final String BEZOUT = "BEZOUT";
 	public static final String ITERATION = "Iteration:";
 	public static final String RESULT = "Result:";
 	public static final String UNSOLVABLE = "Unsolvable";
-	public static final String INVALID_ALGORITHM = "Invalid Algorithm specified. Only BFS and DFS supported.";
+	public static final String INVALID_ALGORITHM = "Invalid Algorithm specified. Only BFS, DFS, PACKED_BFS, PACKED_DFS, BIBFS, ASTAR, PARALLEL_BFS, UCS, IDDFS and EXTERNAL_BFS supported.";
 	
 	public static final String START = "Start State";
 	public static final String A_To_B = "CupA to CupB";
@@ -14,4 +23,48 @@ public class Config {
 	public static final String EMPTY_A = "Empty CupA";
 	public static final String EMPTY_B = "Empty CupB";	
 	public static final String INVALID_OPERATION = "Invalid Operation";
+
+	public static final String CUP = "Cup";
+	public static final String FILL = "Fill ";
+	public static final String EMPTY = "Empty ";
+	public static final String POUR = " to ";
+	public static final String UNKNOWN_STATE = "State has not been visited";
+	public static final String STATE_SPACE_TOO_LARGE = "State space too large";
+	public static final String INTERRUPTED = "Search interrupted";
+	public static final String SPILL_FAILED = "Could not spill the search to disk: ";
+	public static final String BUDGET_EXCEEDED = "Search budget exceeded: ";
+	public static final String DISK_BUDGET_EXCEEDED = "Search needs more disk space than its budget";
+
+	public static final long DEFAULT_VISITED_MEMORY_BUDGET = 16L << 20;
+	public static final int DEFAULT_TRANSPOSITION_TABLE_SIZE = 1 << 16;
+	public static final long DEFAULT_EXTERNAL_MEMORY_BUDGET = 64L << 20;
+	public static final long DEFAULT_EXTERNAL_DISK_BUDGET = 4L << 30;
+
+	public static final String PARALLELISM_OPTION = "--parallelism=";
+	public static final String SEQUENTIAL_TIME = "Sequential BFS ms:";
+	public static final String PARALLEL_TIME = "Parallel BFS ms:";
+	public static final String SPEEDUP = "Speedup:";
+
+	public static final String BATCH_OPTION = "--batch";
+	public static final String ORDERED_OPTION = "--ordered";
+	public static final String THREADS_OPTION = "--threads=";
+	public static final String INVALID_PUZZLE = "Invalid puzzle: ";
+	public static final String TOO_FEW_VALUES = "Expected two or more capacities and a targetVolume";
+	public static final String PUZZLES = "Puzzles:";
+	public static final String THROUGHPUT = "Puzzles/sec:";
+	public static final String LATENCY_P50 = "p50 ms:";
+	public static final String LATENCY_P99 = "p99 ms:";
+
+	public static final String INDEX_OPTION = "--index=";
+	public static final String INVALID_INDEX = "Invalid distance index: ";
+	public static final String STATES = "States:";
+	public static final String BYTES = "Bytes:";
+
+	public static final String PORTFOLIO_OPTION = "--portfolio";
+	public static final String ALL_OPTION = "--all";
+	public static final String DEFAULT_PORTFOLIO = "BFS,DFS,PACKED_BFS,PACKED_DFS,BIBFS,ASTAR,UCS";
+	public static final String LATENCY_MS = "ms:";
+	public static final String INDEX_WITH_PORTFOLIO = "--index cannot be combined with --portfolio";
+
+	public static final String SYMMETRY_OPTION = "--symmetry";
 }
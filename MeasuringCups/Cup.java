@@ -39,18 +39,31 @@ public class Cup {
 	}
 
 	/**
-	 * Compare this cup against another cup
+	 * Compare this cup against another object
 	 * 
-	 * @param cup
-	 *            an other cup to compare against this cup
-	 * @return true if the other cup has the same capacity and currentAmount as
-	 *         this cup and false otherwise
+	 * @param obj
+	 *            an other object to compare against this cup
+	 * @return true if the other object is a cup with the same capacity and
+	 *         currentAmount as this cup and false otherwise
 	 */
-	public boolean equals(Cup cup) {
-		if (this.capacity == cup.capacity && this.currentAmount == cup.currentAmount) {
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
 			return true;
 		}
-		return false;
+		if (!(obj instanceof Cup)) {
+			return false;
+		}
+		Cup cup = (Cup) obj;
+		return this.capacity == cup.capacity && this.currentAmount == cup.currentAmount;
+	}
+
+	/**
+	 * @return a hash code consistent with {@link #equals(Object)}
+	 */
+	@Override
+	public int hashCode() {
+		return 31 * this.capacity + this.currentAmount;
 	}
 
 	/**
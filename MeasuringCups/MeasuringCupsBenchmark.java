@@ -0,0 +1,178 @@
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Microbenchmarks of the measuring cups puzzle, so that a faster engine can
+ * be compared against the current baseline. Run with
+ * <p>
+ * java -Xms1g -Xmx1g MeasuringCupsBenchmark [--quick] [<name filter regex>]
+ * <p>
+ * Every benchmark is run for a number of warmup iterations, whose results are
+ * discarded, and then for a number of measured iterations of a fixed length.
+ * For each benchmark the mean time per operation and its standard deviation
+ * over the measured iterations are printed, with the bytes allocated per
+ * operation by the benchmark thread (what the gc profiler of a harness
+ * reports as gc.alloc.rate.norm). Results of every operation are folded into
+ * a sink so that the JIT cannot drop the work.
+ */
+public class MeasuringCupsBenchmark {
+
+	private static final int WARMUP_ITERATIONS = 5;
+	private static final int MEASURED_ITERATIONS = 10;
+	private static final long ITERATION_NANOS = 500_000_000L;
+	private static final long QUICK_ITERATION_NANOS = 100_000_000L;
+
+	private static final String[][] SEARCH_GRID = {
+			// solvable, two cups
+			{ "5", "3", "2" }, { "7", "11", "6" }, { "31", "29", "7" }, { "97", "89", "45" },
+			// unsolvable, ruled out by the gcd pre-check
+			{ "88", "42", "13" }, { "1000", "998", "501" },
+			// more than two cups
+			{ "8", "5", "3", "4" }, { "24", "13", "11", "7", "1" } };
+
+	private static long sink;
+
+	public static void main(String[] args) {
+		boolean quick = false;
+		String filter = ".*";
+		for (String arg : args) {
+			if (arg.equals("--quick")) {
+				quick = true;
+			} else {
+				filter = arg;
+			}
+		}
+
+		Map<String, Supplier<Object>> benchmarks = new LinkedHashMap<String, Supplier<Object>>();
+		addSearchBenchmarks(benchmarks);
+		addOperationBenchmarks(benchmarks);
+
+		System.out.println(String.format("%-48s %14s %12s %14s", "Benchmark", "ns/op", "+-", "B/op"));
+		for (Map.Entry<String, Supplier<Object>> benchmark : benchmarks.entrySet()) {
+			if (benchmark.getKey().matches(filter)) {
+				run(benchmark.getKey(), benchmark.getValue(), quick ? QUICK_ITERATION_NANOS : ITERATION_NANOS);
+			}
+		}
+		if (sink == 42) {
+			System.out.println();
+		}
+	}
+
+	/**
+	 * findPathIfExists for BFS and DFS over {@link #SEARCH_GRID}, checking
+	 * states on removal and, suffixed onGeneration, on generation; each
+	 * operation solves a new puzzle
+	 */
+	private static void addSearchBenchmarks(Map<String, Supplier<Object>> benchmarks) {
+		for (boolean checkOnGeneration : new boolean[] { false, true }) {
+			for (String algorithm : new String[] { Config.BFS, Config.DFS }) {
+				String name = "findPathIfExists." + algorithm + (checkOnGeneration ? ".onGeneration " : " ");
+				for (String[] values : SEARCH_GRID) {
+					benchmarks.put(name + String.join(" ", values), () -> {
+						MeasuringCupsPuzzle puzzle = MeasuringCupsSolver.createPuzzle(values);
+						puzzle.setCheckOnGeneration(checkOnGeneration);
+						return puzzle.findPathIfExists(algorithm) ? puzzle.retrievePath() : null;
+					});
+				}
+			}
+		}
+	}
+
+	/**
+	 * The operations the search is built from, each in isolation
+	 */
+	private static void addOperationBenchmarks(Map<String, Supplier<Object>> benchmarks) {
+		MeasuringCupsPuzzle small = MeasuringCupsSolver.createPuzzle(new String[] { "7", "11", "6" });
+		MeasuringCupsPuzzleState middle = new MeasuringCupsPuzzleState(new Cup(7, 3), new Cup(11, 5), null);
+		benchmarks.put("getSuccessors 7 11", () -> small.getSuccessors(middle));
+
+		// isProcessed: the visited set against the linear scan of the
+		// processed states it replaced, after exploring most of the states
+		MeasuringCupsPuzzle explored = MeasuringCupsSolver.createPuzzle(new String[] { "97", "89", "1" });
+		explored.findPathIfExists(Config.BFS);
+		MeasuringCupsPuzzleState probe = new MeasuringCupsPuzzleState(new Cup(97, 96), new Cup(89, 89), null);
+		MeasuringCupsPuzzleVisitedSet visitedStates = explored.getVisitedStates();
+		MeasuringCupsPuzzleStateList processedStates = explored.getProcessedStates();
+		benchmarks.put("isProcessed.visitedSet 97 89", () -> visitedStates.contains(probe));
+		benchmarks.put("isProcessed.processedScan 97 89", () -> processedStates.contains(probe));
+
+		MeasuringCupsPuzzleState[] states = new MeasuringCupsPuzzleState[1024];
+		for (int i = 0; i < states.length; i++) {
+			states[i] = new MeasuringCupsPuzzleState(new Cup(1024, i), new Cup(1024, states.length - i), null);
+		}
+		benchmarks.put("MeasuringCupsPuzzleQueue add/remove 1024", () -> fillAndDrain(new MeasuringCupsPuzzleQueue(), states));
+		benchmarks.put("MeasuringCupsPuzzleStack add/remove 1024", () -> fillAndDrain(new MeasuringCupsPuzzleStack(), states));
+
+		MeasuringCupsPuzzle longPath = MeasuringCupsSolver.createPuzzle(new String[] { "1001", "1000", "500" });
+		longPath.findPathIfExists(Config.BFS);
+		MeasuringCupsPuzzleStateList path = longPath.retrievePath();
+		benchmarks.put("MeasuringCupsPuzzleStateList.toString " + path.size() + " states", () -> path.toString());
+	}
+
+	private static Object fillAndDrain(MeasuringCupsPuzzleADT adt, MeasuringCupsPuzzleState[] states) {
+		for (MeasuringCupsPuzzleState state : states) {
+			adt.add(state);
+		}
+		MeasuringCupsPuzzleState last = null;
+		while (!adt.isEmpty()) {
+			last = adt.remove();
+		}
+		return last;
+	}
+
+	/**
+	 * Warm up and measure one benchmark and print its line of results
+	 */
+	private static void run(String name, Supplier<Object> benchmark, long iterationNanos) {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long threadId = Thread.currentThread().getId();
+
+		for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+			iterate(benchmark, iterationNanos);
+		}
+		double[] nanosPerOperation = new double[MEASURED_ITERATIONS];
+		long operations = 0;
+		long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+		for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+			long start = System.nanoTime();
+			long count = iterate(benchmark, iterationNanos);
+			nanosPerOperation[i] = (double) (System.nanoTime() - start) / count;
+			operations += count;
+		}
+		long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+		double mean = 0;
+		for (double value : nanosPerOperation) {
+			mean += value / nanosPerOperation.length;
+		}
+		double variance = 0;
+		for (double value : nanosPerOperation) {
+			variance += (value - mean) * (value - mean) / (nanosPerOperation.length - 1);
+		}
+		System.out.println(String.format("%-48s %14.1f %12.1f %14.1f", name, mean, Math.sqrt(variance),
+				(double) allocated / operations));
+	}
+
+	/**
+	 * @return the number of operations run in one iteration; operations are
+	 *         run in growing batches so the clock is read rarely
+	 */
+	private static long iterate(Supplier<Object> benchmark, long iterationNanos) {
+		long deadline = System.nanoTime() + iterationNanos;
+		long count = 0;
+		int batch = 1;
+		do {
+			for (int i = 0; i < batch; i++) {
+				Object result = benchmark.get();
+				sink += result == null ? 0 : System.identityHashCode(result);
+			}
+			count += batch;
+			if (batch < 1 << 16) {
+				batch <<= 1;
+			}
+		} while (System.nanoTime() < deadline);
+		return count;
+	}
+}
@@ -0,0 +1,39 @@
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * Builds the distance index {@link MeasuringCupsPuzzleDistanceIndex} of a set
+ * of capacities offline, for {@link MeasuringCupsSolver} to map with its
+ * --index option.
+ */
+public class MeasuringCupsIndexBuilder {
+	/**
+	 * Command line interface: MeasuringCupsIndexBuilder <file>
+	 * <cupACapacity> <cupBCapacity> [<cupCCapacity> ...]
+	 * <p>
+	 * Runs a breadth first search from the state with every cup empty over
+	 * every state it can reach, {@link MeasuringCupsPuzzleDistanceTable}, writes
+	 * the result to the file and prints the number of states and the size of
+	 * the file.
+	 * <p>
+	 * Example: MeasuringCupsIndexBuilder cups-5-3.idx 5 3
+	 * States:	16
+	 * Bytes:	296
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 3) {
+			throw new MeasuringCupsPuzzleException(Config.TOO_FEW_VALUES);
+		}
+		int[] capacities = new int[args.length - 1];
+		for (int i = 0; i < capacities.length; i++) {
+			capacities[i] = Integer.parseInt(args[i + 1]);
+		}
+		MeasuringCupsPuzzleSpace space = new MeasuringCupsPuzzleSpace(capacities);
+		MeasuringCupsPuzzleDistanceTable table = new MeasuringCupsPuzzleDistanceTable(space,
+				space.encode(new int[capacities.length]));
+		long bytes = MeasuringCupsPuzzleDistanceIndex.write(table, Paths.get(args[0]));
+
+		System.out.println(Config.STATES + "\t" + table.size());
+		System.out.println(Config.BYTES + "\t" + bytes);
+	}
+}
@@ -1,20 +1,38 @@
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.Iterator;
 
 /**
  * A class describing the measuring cups puzzle with a startState
  * {@link MeasuringCupsPuzzleState} and a goalState
- * {@link MeasuringCupsPuzzleState}
+ * {@link MeasuringCupsPuzzleState}. Both states hold the same number of cups,
+ * two or more
  */
 public class MeasuringCupsPuzzle {
 
 	private MeasuringCupsPuzzleState startState;
 	private MeasuringCupsPuzzleState goalState;
+	private MeasuringCupsPuzzleSpace space;
 
 	private MeasuringCupsPuzzleADT measuringCupsPuzzleADT;
 
 	private MeasuringCupsPuzzleStateList pathFromStartToGoal;
 	private MeasuringCupsPuzzleStateList processedStates;
+	private MeasuringCupsPuzzleVisitedSet visitedStates;
+	private long visitedMemoryBudget;
+	private int parallelism;
+	private boolean checkOnGeneration;
+	private boolean symmetryReduction;
+	private MeasuringCupsPuzzleSymmetry symmetry;
+	private int depthCap;
+	private int transpositionTableSize;
+	private boolean depthCapReached;
+	private Path externalDirectory;
+	private long externalMemoryBudget;
+	private long externalDiskBudget;
 	private MeasuringCupsPuzzleState foundGoalState;
+	private MeasuringCupsPuzzleEngine engine;
+	private MeasuringCupsPuzzleSearchStatistics statistics;
 
 	/**
 	 * Construct a puzzle object by describing the startState and goalState
@@ -29,13 +47,187 @@ public class MeasuringCupsPuzzle {
 	public MeasuringCupsPuzzle(MeasuringCupsPuzzleState startState, MeasuringCupsPuzzleState goalState) {
 		this.startState = startState;
 		this.goalState = goalState;
+		this.space = new MeasuringCupsPuzzleSpace(startState);
 
 		this.pathFromStartToGoal = new MeasuringCupsPuzzleStateList();
 		this.processedStates = new MeasuringCupsPuzzleStateList();
+		this.visitedMemoryBudget = Config.DEFAULT_VISITED_MEMORY_BUDGET;
+		this.parallelism = Runtime.getRuntime().availableProcessors();
+		this.checkOnGeneration = false;
+		this.symmetryReduction = false;
+		this.symmetry = null;
+		this.depthCap = Integer.MAX_VALUE;
+		this.transpositionTableSize = Config.DEFAULT_TRANSPOSITION_TABLE_SIZE;
+		this.depthCapReached = false;
+		this.externalDirectory = null;
+		this.externalMemoryBudget = Config.DEFAULT_EXTERNAL_MEMORY_BUDGET;
+		this.externalDiskBudget = Config.DEFAULT_EXTERNAL_DISK_BUDGET;
+		chooseVisitedSet();
 		this.foundGoalState = null;
+		this.engine = null;
+		this.statistics = null;
 		this.measuringCupsPuzzleADT = null;
 	}
 
+	/**
+	 * @return the state space of the cups of this puzzle
+	 */
+	public MeasuringCupsPuzzleSpace getSpace() {
+		return this.space;
+	}
+
+	/**
+	 * Set the number of bytes the visited set may use before it falls back
+	 * from a dense bitmap over the whole state space to a hash table holding
+	 * only the visited states. The parent links of PACKED_BFS and PACKED_DFS
+	 * fall back from a {@link MeasuringCupsPuzzleParentArray} to a
+	 * {@link MeasuringCupsPuzzleParentTable} under the same budget. The
+	 * default is
+	 * {@link Config#DEFAULT_VISITED_MEMORY_BUDGET}
+	 * 
+	 * @param visitedMemoryBudget
+	 *            the budget in bytes
+	 */
+	public void setVisitedMemoryBudget(long visitedMemoryBudget) {
+		this.visitedMemoryBudget = visitedMemoryBudget;
+		chooseVisitedSet();
+	}
+
+	/**
+	 * Set the number of threads PARALLEL_BFS expands each layer with. The
+	 * default is the number of available processors
+	 * 
+	 * @param parallelism
+	 *            a positive number of threads
+	 */
+	public void setParallelism(int parallelism) {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException();
+		}
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * Choose when BFS, DFS, PACKED_BFS and PACKED_DFS drop duplicates and test
+	 * for the goalState. By default a state is marked as visited, and compared
+	 * with the goalState, when it is removed from the frontier, so every
+	 * successor is added to the frontier. When checking on generation, a
+	 * successor is marked as visited and compared with the goalState as soon
+	 * as it is generated and only new states are added, which keeps the
+	 * frontier small and finds the goal one layer earlier. BFS finds the same
+	 * path either way; DFS may find a different one. ASTAR and UCS always
+	 * check on removal, which keeps their paths optimal, and the engines have
+	 * their own discipline
+	 * 
+	 * @param checkOnGeneration
+	 *            true to check successors when they are generated and false
+	 *            to check states when they are removed from the frontier
+	 */
+	public void setCheckOnGeneration(boolean checkOnGeneration) {
+		this.checkOnGeneration = checkOnGeneration;
+	}
+
+	/**
+	 * Choose whether searches treat states that only differ by a relabeling of
+	 * interchangeable cups, cups with the same capacity and goal volume, as
+	 * one state ({@link MeasuringCupsPuzzleSymmetry}). BFS, DFS, ASTAR, UCS,
+	 * PACKED_BFS and PACKED_DFS then mark the canonical form of each state as
+	 * visited; the paths they return are still moves on the original cups.
+	 * BFS finds a path of the same length either way, not necessarily the
+	 * same path. Off by default
+	 * 
+	 * @param symmetryReduction
+	 *            true to visit one state per relabeling of interchangeable
+	 *            cups and false to visit every state
+	 */
+	public void setSymmetryReduction(boolean symmetryReduction) {
+		this.symmetryReduction = symmetryReduction;
+	}
+
+	/**
+	 * Set the largest number of moves IDDFS looks for a path with. When no
+	 * path that short exists {@link findPathIfExists} returns false even if
+	 * the puzzle can be solved. The default is no cap beyond the number of
+	 * states of the space less one, which no shortest path exceeds
+	 * 
+	 * @param depthCap
+	 *            a number of moves, zero or more
+	 */
+	public void setDepthCap(int depthCap) {
+		if (depthCap < 0) {
+			throw new IllegalArgumentException();
+		}
+		this.depthCap = depthCap;
+	}
+
+	/**
+	 * Set the number of entries of the transposition table IDDFS uses to skip
+	 * states it has already searched from, 16 bytes each. The default is
+	 * {@link Config#DEFAULT_TRANSPOSITION_TABLE_SIZE}, a mebibyte. With 0 no
+	 * table is used, so the memory of IDDFS only grows with the depth of the
+	 * solution, but the time can grow exponentially with it
+	 * 
+	 * @param transpositionTableSize
+	 *            a number of entries, rounded down to a power of two
+	 */
+	public void setTranspositionTableSize(int transpositionTableSize) {
+		if (transpositionTableSize < 0) {
+			throw new IllegalArgumentException();
+		}
+		this.transpositionTableSize = transpositionTableSize;
+	}
+
+	/**
+	 * Set where EXTERNAL_BFS creates the temporary directory holding its
+	 * layer files. The default, null, is the temporary directory of the
+	 * system
+	 * 
+	 * @param externalDirectory
+	 *            a directory on a local disk, or null
+	 */
+	public void setExternalDirectory(Path externalDirectory) {
+		this.externalDirectory = externalDirectory;
+	}
+
+	/**
+	 * Set the bytes of memory EXTERNAL_BFS sorts successors in before it
+	 * writes them to disk. The default is
+	 * {@link Config#DEFAULT_EXTERNAL_MEMORY_BUDGET}
+	 * 
+	 * @param externalMemoryBudget
+	 *            the budget in bytes
+	 */
+	public void setExternalMemoryBudget(long externalMemoryBudget) {
+		this.externalMemoryBudget = externalMemoryBudget;
+	}
+
+	/**
+	 * Set the bytes of disk the files of EXTERNAL_BFS may take; a search that
+	 * needs more throws a {@link MeasuringCupsPuzzleException}. The default is
+	 * {@link Config#DEFAULT_EXTERNAL_DISK_BUDGET}
+	 * 
+	 * @param externalDiskBudget
+	 *            the budget in bytes
+	 */
+	public void setExternalDiskBudget(long externalDiskBudget) {
+		this.externalDiskBudget = externalDiskBudget;
+	}
+
+	/**
+	 * @return the bytes used by the visited set of the last call to
+	 *         {@link findPathIfExists}
+	 */
+	public long getVisitedSetBytes() {
+		return this.visitedStates.bytesUsed();
+	}
+
+	/**
+	 * @return the visited set used by {@link findPathIfExists}
+	 */
+	public MeasuringCupsPuzzleVisitedSet getVisitedStates() {
+		return this.visitedStates;
+	}
+
 	/**
 	 * Solve the measuring cups puzzle if it can be solved. Set processedStates
 	 * by adding a {@link MeasuringCupsPuzzleState} graph node to the list as
@@ -44,19 +236,132 @@ public class MeasuringCupsPuzzle {
 	 * by *algorithm* visits a node with the same values as the desired
 	 * goalState
 	 * 
+	 * <p>
+	 * The PACKED_BFS and PACKED_DFS algorithms run the same traversals on a
+	 * {@link MeasuringCupsPuzzlePackedEngine}, which does not allocate states
+	 * while searching. BIBFS runs a
+	 * {@link MeasuringCupsPuzzleBidirectionalEngine}, which finds a path as
+	 * short as BFS does. PARALLEL_BFS runs a
+	 * {@link MeasuringCupsPuzzleParallelEngine} on {@link setParallelism}
+	 * threads and finds the same path as BFS. Engines leave processedStates
+	 * empty. ASTAR orders the states by depth plus
+	 * {@link MeasuringCupsPuzzleHeuristic} and finds a path as short as BFS
+	 * does. UCS orders the states by the water moved so far,
+	 * {@link MeasuringCupsPuzzleCostPriority}, and finds a path that moves as
+	 * little water as possible, see {@link getPathCost}. IDDFS runs a
+	 * {@link MeasuringCupsPuzzleIterativeDeepeningEngine}, which finds a path
+	 * as short as BFS does with memory proportional to its length, see
+	 * {@link setDepthCap} and {@link setTranspositionTableSize}. EXTERNAL_BFS
+	 * runs a {@link MeasuringCupsPuzzleExternalEngine}, which keeps the layers
+	 * of a BFS in files for spaces too large for memory, see
+	 * {@link setExternalDirectory}, {@link setExternalMemoryBudget} and
+	 * {@link setExternalDiskBudget}.
+	 * <p>
+	 * Each call records the work it does in a new
+	 * {@link MeasuringCupsPuzzleSearchStatistics}, see {@link getStatistics}.
+	 * 
 	 * @param algorithm
 	 *            a String describing how the puzzle will be solved; has a value
-	 *            equal to the project configuration {@link Config} BFS or DFS;
-	 *            e.g. "BFS"
+	 *            equal to the project configuration {@link Config} BFS, DFS,
+	 *            PACKED_BFS, PACKED_DFS, BIBFS, ASTAR, PARALLEL_BFS, UCS,
+	 *            IDDFS or EXTERNAL_BFS; e.g. "BFS"
 	 * @return true if the puzzle can be solved (and has been solved, see
 	 *         {@link retrievePath} to obtain the solution stored in this
 	 *         object) and false otherwise
 	 */
 	public boolean findPathIfExists(String algorithm) {
-		chooseADT(algorithm);
+		this.statistics = new MeasuringCupsPuzzleSearchStatistics(algorithm, describe());
+		boolean goalFound = false;
+		try {
+			goalFound = search(algorithm);
+		} finally {
+			this.statistics.finish(goalFound);
+		}
+		return goalFound;
+	}
+
+	/**
+	 * Solve the puzzle like {@link findPathIfExists}, but stop once the search
+	 * passes a limit of budget instead of running until it is done. A search
+	 * that is stopped unwinds at its next check and leaves no path in this
+	 * object; an IDDFS search that stops at its depth cap
+	 * ({@link setDepthCap}) is reported as stopped by the DEPTH limit rather
+	 * than as unsolvable.
+	 * 
+	 * @param algorithm
+	 *            a String describing how the puzzle will be solved, as for
+	 *            {@link findPathIfExists}
+	 * @param budget
+	 *            the limits of the search {@link MeasuringCupsPuzzleSolveBudget}
+	 * @return a {@link MeasuringCupsPuzzleSolveOutcome} with the path if the
+	 *         puzzle was solved, and the statistics of the search in any case
+	 */
+	public MeasuringCupsPuzzleSolveOutcome solve(String algorithm, MeasuringCupsPuzzleSolveBudget budget) {
+		this.statistics = new MeasuringCupsPuzzleSearchStatistics(algorithm, describe(), budget);
+		boolean goalFound = false;
+		try {
+			this.statistics.checkBudget();
+			goalFound = search(algorithm);
+		} catch (MeasuringCupsPuzzleBudgetExceededException e) {
+			this.foundGoalState = null;
+			this.engine = null;
+			return new MeasuringCupsPuzzleSolveOutcome(MeasuringCupsPuzzleSolveOutcome.Status.BUDGET_EXCEEDED,
+					e.getLimit(), null, this.statistics);
+		} finally {
+			this.statistics.finish(goalFound);
+		}
+		if (goalFound) {
+			return new MeasuringCupsPuzzleSolveOutcome(MeasuringCupsPuzzleSolveOutcome.Status.SOLVED, null,
+					retrievePath(), this.statistics);
+		}
+		if (this.depthCapReached) {
+			return new MeasuringCupsPuzzleSolveOutcome(MeasuringCupsPuzzleSolveOutcome.Status.BUDGET_EXCEEDED,
+					MeasuringCupsPuzzleSolveBudget.Limit.DEPTH, null, this.statistics);
+		}
+		return new MeasuringCupsPuzzleSolveOutcome(MeasuringCupsPuzzleSolveOutcome.Status.UNSOLVABLE, null, null,
+				this.statistics);
+	}
+
+	/**
+	 * @return the capacities followed by the startState and goalState, e.g.
+	 *         "[5, 3] (0, 0) -> (2, 0)"
+	 */
+	private String describe() {
+		StringBuilder description = new StringBuilder("[");
+		for (int i = 0; i < this.space.getCupCount(); i++) {
+			if (i > 0) {
+				description.append(", ");
+			}
+			description.append(this.space.getCapacity(i));
+		}
+		return description.append("] ").append(this.startState).append(" -> ").append(this.goalState).toString();
+	}
+
+	/**
+	 * The search behind {@link findPathIfExists}
+	 */
+	private boolean search(String algorithm) {
+		this.depthCapReached = false;
+		this.symmetry = this.symmetryReduction
+				? MeasuringCupsPuzzleSymmetry.of(this.space, this.space.encode(this.goalState))
+				: null;
+		MeasuringCupsPuzzleEngine engine = chooseEngine(algorithm);
+		if (engine == null) {
+			chooseADT(algorithm);
+		}
 		resetCupPuzzle();
+		if (isRuledOutByDivisibility()) {
+			return false;
+		}
+		if (engine != null) {
+			return findEnginePathIfExists(engine);
+		}
+		if (this.checkOnGeneration && !Config.ASTAR.equals(algorithm) && !Config.UCS.equals(algorithm)) {
+			return findPathOnGeneration();
+		}
 
 		this.measuringCupsPuzzleADT.add(this.startState);
+		this.statistics.recordFrontier(this.measuringCupsPuzzleADT.size());
 
 		boolean goalFound = false;
 		MeasuringCupsPuzzleStateList currentSuccessors = null;
@@ -64,8 +369,10 @@ public class MeasuringCupsPuzzle {
 		while (!this.measuringCupsPuzzleADT.isEmpty()) {
 			MeasuringCupsPuzzleState currentState = this.measuringCupsPuzzleADT.remove();
 
-			if (isProcessed(currentState))
+			if (isProcessed(currentState)) {
+				this.statistics.recordDuplicate();
 				continue;
+			}
 			// while (isProcessed(currentState)) {
 			// if (!this.measuringCupsPuzzleADT.isEmpty()) {
 			// currentState = this.measuringCupsPuzzleADT.remove();
@@ -79,72 +386,279 @@ public class MeasuringCupsPuzzle {
 				break;
 			} else {
 				processedStates.add(currentState);
+				visitedStates.add(canonicalize(currentState));
+				this.statistics.recordExpanded();
 
-				currentSuccessors = getSuccessors(currentState);
+				currentSuccessors = getSuccessors(currentState, this.statistics);
 
 				Iterator<MeasuringCupsPuzzleState> iterator = currentSuccessors.iterator();
 				while (iterator.hasNext()) {
 					MeasuringCupsPuzzleState currentSuccessor = iterator.next();
 					this.measuringCupsPuzzleADT.add(currentSuccessor);
 				}
+				this.statistics.recordFrontier(this.measuringCupsPuzzleADT.size());
+			}
+		}
+		return goalFound;
+	}
+
+	/**
+	 * The search of {@link findPathIfExists} when checking on generation, see
+	 * {@link setCheckOnGeneration}. Every state in the frontier has already
+	 * been added to visitedStates, so no duplicate is ever added to the
+	 * measuringCupsPuzzleADT. processedStates holds the expanded states in the
+	 * order in which they were expanded
+	 * 
+	 * @return true if the puzzle can be solved and false otherwise
+	 */
+	private boolean findPathOnGeneration() {
+		this.visitedStates.add(canonicalize(this.startState));
+		if (this.goalState.equals(this.startState)) {
+			this.foundGoalState = this.startState;
+			return true;
+		}
+		this.measuringCupsPuzzleADT.add(this.startState);
+		this.statistics.recordFrontier(this.measuringCupsPuzzleADT.size());
+
+		while (!this.measuringCupsPuzzleADT.isEmpty()) {
+			MeasuringCupsPuzzleState currentState = this.measuringCupsPuzzleADT.remove();
+			processedStates.add(currentState);
+			this.statistics.recordExpanded();
+
+			for (MeasuringCupsPuzzleState currentSuccessor : getSuccessors(currentState, this.statistics)) {
+				if (isProcessed(currentSuccessor)) {
+					this.statistics.recordDuplicate();
+					continue;
+				}
+				visitedStates.add(canonicalize(currentSuccessor));
+				if (this.goalState.equals(currentSuccessor)) {
+					this.foundGoalState = currentSuccessor;
+					return true;
+				}
+				this.measuringCupsPuzzleADT.add(currentSuccessor);
 			}
+			this.statistics.recordFrontier(this.measuringCupsPuzzleADT.size());
+		}
+		return false;
+	}
+
+	/**
+	 * Reject the puzzle without searching when the goal cannot be reached for
+	 * arithmetic reasons. Filling, emptying and pouring only ever move
+	 * multiples of the gcd of the capacities, so if every cup of the
+	 * startState holds such a multiple, so does every cup of every reachable
+	 * state. Runs in O(N log capacity)
+	 * 
+	 * @return true if the goalState is certainly unreachable and false if a
+	 *         search is needed to tell
+	 */
+	private boolean isRuledOutByDivisibility() {
+		long divisor = 0;
+		for (int i = 0; i < this.space.getCupCount(); i++) {
+			divisor = MeasuringCupsPuzzleBezout.gcd(divisor, this.space.getCapacity(i));
+		}
+		if (divisor == 0) {
+			return false;
+		}
+		for (int i = 0; i < this.space.getCupCount(); i++) {
+			if (this.startState.getCup(i).getCurrentAmount() % divisor != 0) {
+				return false;
+			}
+		}
+		for (int i = 0; i < this.space.getCupCount(); i++) {
+			if (this.goalState.getCup(i).getCurrentAmount() % divisor != 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Solve the puzzle with a {@link MeasuringCupsPuzzleEngine}. The engine is
+	 * kept so that {@link retrievePath} can build the states of the solution
+	 * 
+	 * @param engine
+	 *            the engine chosen by {@link chooseEngine}
+	 * @return true if the puzzle can be solved and false otherwise
+	 */
+	private boolean findEnginePathIfExists(MeasuringCupsPuzzleEngine engine) {
+		boolean goalFound = engine.search(this.space.encode(this.startState), this.space.encode(this.goalState),
+				this.statistics);
+		if (goalFound) {
+			this.engine = engine;
+		} else if (engine instanceof MeasuringCupsPuzzleIterativeDeepeningEngine) {
+			this.depthCapReached = ((MeasuringCupsPuzzleIterativeDeepeningEngine) engine).isDepthCapReached();
 		}
 		return goalFound;
 	}
 
+	/**
+	 * @param algorithm
+	 *            a String describing how the puzzle will be solved
+	 * @return a new {@link MeasuringCupsPuzzleEngine} if the algorithm runs on
+	 *         packed state keys (PACKED_BFS, PACKED_DFS, BIBFS,
+	 *         PARALLEL_BFS, IDDFS or EXTERNAL_BFS) and null if it runs on a
+	 *         {@link MeasuringCupsPuzzleADT}
+	 */
+	private MeasuringCupsPuzzleEngine chooseEngine(String algorithm) {
+		if (Config.PACKED_BFS.equals(algorithm)) {
+			return new MeasuringCupsPuzzlePackedEngine(this.space, false, this.checkOnGeneration, chooseParents(),
+					this.symmetry);
+		} else if (Config.PACKED_DFS.equals(algorithm)) {
+			return new MeasuringCupsPuzzlePackedEngine(this.space, true, this.checkOnGeneration, chooseParents(),
+					this.symmetry);
+		} else if (Config.BIBFS.equals(algorithm)) {
+			return new MeasuringCupsPuzzleBidirectionalEngine(this.space);
+		} else if (Config.PARALLEL_BFS.equals(algorithm)) {
+			return new MeasuringCupsPuzzleParallelEngine(this.space, this.parallelism);
+		} else if (Config.IDDFS.equals(algorithm)) {
+			return new MeasuringCupsPuzzleIterativeDeepeningEngine(this.space, this.depthCap,
+					this.transpositionTableSize);
+		} else if (Config.EXTERNAL_BFS.equals(algorithm)) {
+			return new MeasuringCupsPuzzleExternalEngine(this.space, this.externalDirectory,
+					this.externalMemoryBudget, this.externalDiskBudget);
+		}
+		return null;
+	}
+
+	/**
+	 * Run one breadth first search from the startState over every reachable
+	 * state. The returned table answers shortest paths to any goal, not only
+	 * to this puzzle's goalState, without searching again
+	 * 
+	 * @return a {@link MeasuringCupsPuzzleDistanceTable} for the startState
+	 */
+	public MeasuringCupsPuzzleDistanceTable buildDistanceTable() {
+		return new MeasuringCupsPuzzleDistanceTable(this.space, this.space.encode(this.startState));
+	}
+
+	/**
+	 * @return the number of states whose successors (or, for the backward half
+	 *         of BIBFS, predecessors) the last call to
+	 *         {@link findPathIfExists} generated
+	 */
+	public long getNodesExpanded() {
+		return this.statistics == null ? 0 : this.statistics.getNodesExpanded();
+	}
+
+	/**
+	 * @return the {@link MeasuringCupsPuzzleSearchStatistics} of the last call
+	 *         to {@link findPathIfExists}, or null before the first call
+	 */
+	public MeasuringCupsPuzzleSearchStatistics getStatistics() {
+		return this.statistics;
+	}
+
 	/**
 	 * Set member measuringCupsPuzzleADT {@link MeasuringCupsPuzzleADT} with a
 	 * data type that will be used to solve the puzzle.
 	 * 
 	 * @param algorithm
 	 *            a String describing how the puzzle will be solved; has a value
-	 *            equal to the project configuration {@link Config} BFS or DFS;
-	 *            e.g. "BFS"
+	 *            equal to the project configuration {@link Config} BFS, DFS,
+	 *            ASTAR or UCS; e.g. "BFS"
 	 */
 	private void chooseADT(String algorithm) {
 		if (Config.BFS.equals(algorithm)) {
 			measuringCupsPuzzleADT = new MeasuringCupsPuzzleQueue();
 		} else if (Config.DFS.equals(algorithm)) {
 			measuringCupsPuzzleADT = new MeasuringCupsPuzzleStack();
+		} else if (Config.ASTAR.equals(algorithm)) {
+			measuringCupsPuzzleADT = new MeasuringCupsPuzzlePriorityQueue(
+					new MeasuringCupsPuzzleHeuristic(this.space, this.goalState));
+		} else if (Config.UCS.equals(algorithm)) {
+			measuringCupsPuzzleADT = new MeasuringCupsPuzzlePriorityQueue(new MeasuringCupsPuzzleCostPriority());
 		} else {
 			throw new MeasuringCupsPuzzleException(Config.INVALID_ALGORITHM);
 		}
 	}
 
+	/**
+	 * Set member visitedStates {@link MeasuringCupsPuzzleVisitedSet} to a
+	 * {@link MeasuringCupsPuzzleBitSetVisitedSet} if a bitmap over all states
+	 * of the space, (capacityA + 1) * (capacityB + 1) * ..., fits in
+	 * visitedMemoryBudget and to a {@link MeasuringCupsPuzzleHashedVisitedSet}
+	 * otherwise
+	 */
+	private void chooseVisitedSet() {
+		if (MeasuringCupsPuzzleBitSetVisitedSet.bytesFor(this.space) <= this.visitedMemoryBudget) {
+			this.visitedStates = new MeasuringCupsPuzzleBitSetVisitedSet(this.space);
+		} else {
+			this.visitedStates = new MeasuringCupsPuzzleHashedVisitedSet();
+		}
+	}
+
+	/**
+	 * @return a {@link MeasuringCupsPuzzleParentArray} if an array entry for
+	 *         every state of the space fits in visitedMemoryBudget and takes no
+	 *         more than a {@link MeasuringCupsPuzzleParentTable} would if every
+	 *         state the search can reach ({@link
+	 *         MeasuringCupsPuzzleSpace#getBoundarySize}) were visited, and a
+	 *         table holding only the visited states otherwise
+	 */
+	private MeasuringCupsPuzzleParents chooseParents() {
+		long arrayBytes = MeasuringCupsPuzzleParentArray.bytesFor(this.space);
+		if (arrayBytes <= this.visitedMemoryBudget
+				&& arrayBytes <= MeasuringCupsPuzzleParentTable.bytesFor(this.space.getBoundarySize() + 1)) {
+			return new MeasuringCupsPuzzleParentArray(this.space);
+		}
+		return new MeasuringCupsPuzzleParentTable();
+	}
+
 	/**
 	 * Reset the puzzle by erasing all member variables which store some aspect
-	 * of the solution (pathFromStartToGoal, processedStates, and
+	 * of the solution (pathFromStartToGoal, processedStates, visitedStates and
 	 * foundGoalState) and setting them to their initial values
 	 */
 	private void resetCupPuzzle() {
 		pathFromStartToGoal.clear();
 		processedStates.clear();
+		visitedStates.clear();
 		foundGoalState = null;
+		engine = null;
 	}
 
 	/**
-	 * Mark the graph node represented by currentState as visited for the
-	 * purpose of the graph traversal algorithm being used to solve the puzzle
-	 * (set by {@link chooseADT})
+	 * Check whether the graph node represented by currentState has already
+	 * been visited by the graph traversal algorithm being used to solve the
+	 * puzzle (set by {@link chooseADT}). The lookup goes through visitedStates
+	 * and takes constant time; processedStates keeps the visiting order for
+	 * reporting only
 	 * 
 	 * @param currentState
 	 *            {@link MeasuringCupsPuzzleState}
 	 * @return true if the currentState has been visited and false otherwise
 	 */
 	private boolean isProcessed(MeasuringCupsPuzzleState currentState) {
-		MeasuringCupsPuzzleState closedState = null;
-		boolean isProcessed = false;
-		Iterator<MeasuringCupsPuzzleState> closedIterator = this.processedStates.iterator();
-		if (currentState != null) {
-			while (closedIterator.hasNext()) {
-				closedState = closedIterator.next();
-				isProcessed = closedState.equals(currentState);
-				if (isProcessed == true) {
-					break;
-				}
-			}
+		if (currentState == null) {
+			return false;
 		}
-		return isProcessed;
+		return this.visitedStates.contains(canonicalize(currentState));
+	}
+
+	/**
+	 * @param currentState
+	 *            {@link MeasuringCupsPuzzleState}
+	 * @return the state visitedStates marks for currentState: currentState
+	 *         itself or, with symmetry reduction ({@link setSymmetryReduction}),
+	 *         its canonical form
+	 */
+	private MeasuringCupsPuzzleState canonicalize(MeasuringCupsPuzzleState currentState) {
+		if (this.symmetry == null) {
+			return currentState;
+		}
+		long key = this.space.encode(currentState);
+		long canonicalKey = this.symmetry.canonicalKey(key);
+		return canonicalKey == key ? currentState
+				: this.space.toState(canonicalKey, null, MeasuringCupsPuzzleSpace.NO_MOVE);
+	}
+
+	/**
+	 * @return the states visited by the last call to {@link findPathIfExists}
+	 *         in the order in which they were visited
+	 */
+	public MeasuringCupsPuzzleStateList getProcessedStates() {
+		return this.processedStates;
 	}
 
 	/**
@@ -152,13 +666,24 @@ public class MeasuringCupsPuzzle {
 	 * was found. Set pathFromStartToGoal by starting at the foundGoalState and
 	 * accessing/setting the current node to the parentState
 	 * {@link MeasuringCupsPuzzleState#getParentState} until reaching the
-	 * startState
+	 * startState. After a search by a {@link MeasuringCupsPuzzleEngine} the
+	 * states of the path are built here from the packed keys kept by the engine
 	 * 
 	 * @return a list of states {@link MeasuringCupsPuzzleStateList}
-	 *         representing the changes in volume of cupA and cupB from the
-	 *         initial state to the goal state.
+	 *         representing the changes in volume of the cups from the initial
+	 *         state to the goal state.
 	 */
 	public MeasuringCupsPuzzleStateList retrievePath() {
+		if (this.foundGoalState == null && this.engine != null) {
+			long[] pathKeys = this.engine.getPathKeys();
+			MeasuringCupsPuzzleState currentState = this.space.toState(pathKeys[0], null);
+			for (int i = 1; i < pathKeys.length; i++) {
+				currentState = this.space.toState(pathKeys[i], currentState,
+						this.space.moveBetween(pathKeys[i - 1], pathKeys[i]));
+			}
+			this.foundGoalState = currentState;
+		}
+		this.pathFromStartToGoal.clear();
 		MeasuringCupsPuzzleState foundGoalState = this.foundGoalState;
 		this.pathFromStartToGoal.add(foundGoalState);
 		MeasuringCupsPuzzleState currentState = foundGoalState;
@@ -170,63 +695,110 @@ public class MeasuringCupsPuzzle {
 		return this.pathFromStartToGoal;
 	}
 
+	/**
+	 * Assuming {@link findPathIfExists} returns true, return the cost of the
+	 * solution that was found: the liters of water filled into or poured
+	 * between cups along it, {@link MeasuringCupsPuzzleState#getCost}. After
+	 * UCS this is the least cost of any solution
+	 * 
+	 * @return the cost of the path of {@link retrievePath}
+	 */
+	public long getPathCost() {
+		retrievePath();
+		return this.foundGoalState.getCost();
+	}
+
+	/**
+	 * Assuming {@link findPathIfExists} returns true, write the solution that
+	 * was found to out in the format of
+	 * {@link MeasuringCupsPuzzleStateList#toString}, one state per line. After
+	 * a search by a {@link MeasuringCupsPuzzleEngine} the lines are written
+	 * straight from the packed keys kept by the engine, so no state is built;
+	 * otherwise the path of {@link retrievePath} is written
+	 * 
+	 * @param out
+	 *            where the path is written
+	 * @throws IOException
+	 *             if out cannot be written
+	 */
+	public void writePath(Appendable out) throws IOException {
+		if (this.foundGoalState != null || this.engine == null) {
+			retrievePath().writeTo(out);
+			return;
+		}
+		long[] pathKeys = this.engine.getPathKeys();
+		for (int i = 0; i < pathKeys.length; i++) {
+			if (i > 0) {
+				out.append('\n');
+				out.append(this.space.getMoveName(this.space.moveBetween(pathKeys[i - 1], pathKeys[i])));
+			} else {
+				out.append(Config.START);
+			}
+			out.append('\t');
+			this.space.writeState(pathKeys[i], out);
+		}
+	}
+
 	/**
 	 * Enumerate all possible states that can be reached from the currentState
 	 * 
 	 * @param currentState
-	 *            the current volumes of cupA and cupB
+	 *            the current volumes of the cups
 	 * @return a list of states {@link MeasuringCupsPuzzleStateList} that can be
-	 *         reached by emptying cupA or cupB, pouring from cupA to cupB and
-	 *         vice versa, and filling cupA or cupB to its max capacity
+	 *         reached by filling each cup to its max capacity, emptying each
+	 *         cup, and pouring from each cup into each other cup, in the move
+	 *         order of {@link MeasuringCupsPuzzleSpace}
 	 */
 	public MeasuringCupsPuzzleStateList getSuccessors(MeasuringCupsPuzzleState currentState) {
+		return getSuccessors(currentState, null);
+	}
+
+	/**
+	 * @param currentState
+	 *            the current volumes of the cups
+	 * @param statistics
+	 *            where the kind of move generating each successor is
+	 *            recorded, or null
+	 * @return the successors of currentState, see {@link getSuccessors}
+	 */
+	private MeasuringCupsPuzzleStateList getSuccessors(MeasuringCupsPuzzleState currentState,
+			MeasuringCupsPuzzleSearchStatistics statistics) {
 		MeasuringCupsPuzzleStateList successors = new MeasuringCupsPuzzleStateList();
 
 		if (currentState == null) {
 			return successors;
 		}
 
-		// Fill bigger Cup
-		successors.add(fillCupA(currentState));
-
-		// Fill smaller Cup
-		successors.add(fillCupB(currentState));
-
-		// Empty larger Cup
-		successors.add(emptyCupA(currentState));
-
-		// Empty smaller Cup
-		successors.add(emptyCupB(currentState));
-
-		// Pour from larger to smaller (reduce larger amount by min(larger,
-		// difference b/w smaller capacity and current smaller); increase
-		// smaller amount to capacity
-		successors.add(pourCupAToCupB(currentState));
-
-		// Pour from smaller to larger (reduce smaller by min(smaller,
-		// difference between larger capacity and smaller capacity)
-		successors.add(pourCupBToCupA(currentState));
-
-		Iterator<MeasuringCupsPuzzleState> successorIterator = successors.iterator();
-		while (successorIterator.hasNext()) {
-			MeasuringCupsPuzzleState successor = successorIterator.next();
-			if (currentState.equals(successor)) {
-				successorIterator.remove();
+		long currentKey = this.space.encode(currentState);
+		for (int move = 0; move < this.space.getMoveCount(); move++) {
+			long successorKey = this.space.apply(currentKey, move);
+			if (successorKey != currentKey) {
+				successors.add(this.space.toState(successorKey, currentState, move));
+				if (statistics != null) {
+					statistics.recordGenerated(this.space.getMoveKind(move));
+				}
 			}
 		}
 		return successors;
 	}
 
+	/**
+	 * @param currentState
+	 * @param move
+	 *            a move number of {@link MeasuringCupsPuzzleSpace}
+	 * @return a new state obtained from currentState by applying move
+	 */
+	private MeasuringCupsPuzzleState applyMove(MeasuringCupsPuzzleState currentState, int move) {
+		return this.space.toState(this.space.apply(this.space.encode(currentState), move), currentState, move);
+	}
+
 	/**
 	 * @param currentState
 	 * @return a new state obtained from currentState by filling cupA to its max
 	 *         capacity
 	 */
 	public MeasuringCupsPuzzleState fillCupA(MeasuringCupsPuzzleState currentState) {
-		Cup cupA = new Cup(currentState.getCupA().getCapacity(), currentState.getCupA().getCapacity());
-		Cup cupB = new Cup(currentState.getCupB().getCapacity(), currentState.getCupB().getCurrentAmount());
-		MeasuringCupsPuzzleState nextState = new MeasuringCupsPuzzleState(cupA, cupB, currentState);
-		return nextState;
+		return applyMove(currentState, this.space.fillMove(0));
 	}
 
 	/**
@@ -235,10 +807,7 @@ public class MeasuringCupsPuzzle {
 	 *         capacity
 	 */
 	public MeasuringCupsPuzzleState fillCupB(MeasuringCupsPuzzleState currentState) {
-		Cup cupA = new Cup(currentState.getCupA().getCapacity(), currentState.getCupA().getCurrentAmount());
-		Cup cupB = new Cup(currentState.getCupB().getCapacity(), currentState.getCupB().getCapacity());
-		MeasuringCupsPuzzleState nextState = new MeasuringCupsPuzzleState(cupA, cupB, currentState);
-		return nextState;
+		return applyMove(currentState, this.space.fillMove(1));
 	}
 
 	/**
@@ -246,10 +815,7 @@ public class MeasuringCupsPuzzle {
 	 * @return a new state obtained from currentState by emptying cupA
 	 */
 	public MeasuringCupsPuzzleState emptyCupA(MeasuringCupsPuzzleState currentState) {
-		Cup cupA = new Cup(currentState.getCupA().getCapacity(), 0);
-		Cup cupB = new Cup(currentState.getCupB().getCapacity(), currentState.getCupB().getCurrentAmount());
-		MeasuringCupsPuzzleState nextState = new MeasuringCupsPuzzleState(cupA, cupB, currentState);
-		return nextState;
+		return applyMove(currentState, this.space.emptyMove(0));
 	}
 
 	/**
@@ -257,10 +823,7 @@ public class MeasuringCupsPuzzle {
 	 * @return a new state obtained from currentState by emptying cupB
 	 */
 	public MeasuringCupsPuzzleState emptyCupB(MeasuringCupsPuzzleState currentState) {
-		Cup cupA = new Cup(currentState.getCupA().getCapacity(), currentState.getCupA().getCurrentAmount());
-		Cup cupB = new Cup(currentState.getCupB().getCapacity(), 0);
-		MeasuringCupsPuzzleState nextState = new MeasuringCupsPuzzleState(cupA, cupB, currentState);
-		return nextState;
+		return applyMove(currentState, this.space.emptyMove(1));
 	}
 
 	/**
@@ -269,17 +832,7 @@ public class MeasuringCupsPuzzle {
 	 *         of cupA into cupB until either cupA is empty or cupB is full
 	 */
 	public MeasuringCupsPuzzleState pourCupAToCupB(MeasuringCupsPuzzleState currentState) {
-		Integer transferAmount = 0;
-		Integer currentDifference = Math
-				.abs(currentState.getCupB().getCapacity() - currentState.getCupB().getCurrentAmount());
-		transferAmount = Math.min(currentState.getCupA().getCurrentAmount(), currentDifference);
-
-		Cup cupA = new Cup(currentState.getCupA().getCapacity(),
-				currentState.getCupA().getCurrentAmount() - transferAmount);
-		Cup cupB = new Cup(currentState.getCupB().getCapacity(),
-				currentState.getCupB().getCurrentAmount() + transferAmount);
-		MeasuringCupsPuzzleState nextState = new MeasuringCupsPuzzleState(cupA, cupB, currentState);
-		return nextState;
+		return applyMove(currentState, this.space.pourMove(0, 1));
 	}
 
 	/**
@@ -288,16 +841,6 @@ public class MeasuringCupsPuzzle {
 	 *         of cupB into cupA until either cupB is empty or cupA is full
 	 */
 	public MeasuringCupsPuzzleState pourCupBToCupA(MeasuringCupsPuzzleState currentState) {
-		Integer transferAmount = 0;
-		Integer currentDifference = Math
-				.abs(currentState.getCupA().getCapacity() - currentState.getCupA().getCurrentAmount());
-		transferAmount = Math.min(currentState.getCupB().getCurrentAmount(), currentDifference);
-
-		Cup cupA = new Cup(currentState.getCupA().getCapacity(),
-				currentState.getCupA().getCurrentAmount() + transferAmount);
-		Cup cupB = new Cup(currentState.getCupB().getCapacity(),
-				currentState.getCupB().getCurrentAmount() - transferAmount);
-		MeasuringCupsPuzzleState nextState = new MeasuringCupsPuzzleState(cupA, cupB, currentState);
-		return nextState;
+		return applyMove(currentState, this.space.pourMove(1, 0));
 	}
 }
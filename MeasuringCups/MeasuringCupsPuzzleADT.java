@@ -9,5 +9,7 @@ public interface MeasuringCupsPuzzleADT {
 
 	boolean isEmpty();
 
+	int size();
+
 	void clear();
 }
@@ -0,0 +1,213 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Solves many puzzles in one process. Each input line holds one puzzle in the
+ * form of the command line of {@link MeasuringCupsSolver}: the capacity of
+ * each cup followed by the targetVolume, separated by whitespace. Blank lines
+ * are skipped.
+ * <p>
+ * The puzzles are solved with BFS on a fixed pool of worker threads, behind a
+ * {@link MeasuringCupsPuzzleCache}, and each result is written as soon as it
+ * is ready: a line holding the input line number and the puzzle, then the
+ * path or "Unsolvable", then a blank line. In ordered mode results wait in a
+ * reorder buffer until every earlier line has been written. At most a few
+ * puzzles per thread are read ahead of the slowest unfinished one, so a large
+ * input is never held in memory.
+ */
+public class MeasuringCupsPuzzleBatch {
+
+	private static final int PUZZLES_IN_FLIGHT_PER_THREAD = 4;
+	private static final int CACHE_ENTRIES = 1 << 12;
+
+	private final int threads;
+	private final boolean ordered;
+	private final MeasuringCupsPuzzleCache cache;
+
+	private final Map<Long, String> pendingResults;
+	private long nextLineToWrite;
+	private final MeasuringCupsPuzzleLongList latencies;
+	private IOException writeFailure;
+	private long wallNanos;
+
+	/**
+	 * Construct a batch solver
+	 * 
+	 * @param threads
+	 *            the number of worker threads, at least one
+	 * @param ordered
+	 *            true to write results in input order and false to write each
+	 *            result as soon as it is solved
+	 */
+	public MeasuringCupsPuzzleBatch(int threads, boolean ordered) {
+		this.threads = Math.max(1, threads);
+		this.ordered = ordered;
+		this.cache = new MeasuringCupsPuzzleCache(CACHE_ENTRIES);
+		this.pendingResults = new HashMap<Long, String>();
+		this.latencies = new MeasuringCupsPuzzleLongList();
+	}
+
+	/**
+	 * Solve every puzzle read from in and write the results to out
+	 * 
+	 * @param in
+	 *            the puzzles, one per line
+	 * @param out
+	 *            where the results are written; flushed after each result
+	 * @throws IOException
+	 *             if in cannot be read or out cannot be written
+	 * @throws InterruptedException
+	 *             if the calling thread is interrupted while waiting for the
+	 *             workers
+	 */
+	public void solveAll(BufferedReader in, Writer out) throws IOException, InterruptedException {
+		ExecutorService workers = Executors.newFixedThreadPool(this.threads);
+		Semaphore inFlight = new Semaphore(this.threads * PUZZLES_IN_FLIGHT_PER_THREAD);
+		long start = System.nanoTime();
+		synchronized (this) {
+			this.nextLineToWrite = 1;
+			this.pendingResults.clear();
+			this.latencies.clear();
+			this.writeFailure = null;
+		}
+		try {
+			long lineNumber = 0;
+			String line;
+			while ((line = in.readLine()) != null) {
+				final long currentLine = ++lineNumber;
+				final String spec = line.trim();
+				if (spec.isEmpty()) {
+					publish(currentLine, null, out);
+					continue;
+				}
+				inFlight.acquire();
+				workers.execute(() -> {
+					String result = null;
+					try {
+						long solveStart = System.nanoTime();
+						result = solve(currentLine, spec);
+						long solveNanos = System.nanoTime() - solveStart;
+						synchronized (this) {
+							this.latencies.add(solveNanos);
+						}
+					} catch (Throwable e) {
+						// an Error must still fill its line, or an ordered run
+						// would hold back every later result
+						result = resultBlock(currentLine, spec, Config.INVALID_PUZZLE + e);
+						throw e;
+					} finally {
+						publish(currentLine, result, out);
+						inFlight.release();
+					}
+				});
+			}
+		} finally {
+			workers.shutdown();
+			workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+			this.wallNanos = System.nanoTime() - start;
+		}
+		synchronized (this) {
+			if (this.writeFailure != null) {
+				throw this.writeFailure;
+			}
+		}
+	}
+
+	/**
+	 * @return the result block of one puzzle
+	 */
+	private String solve(long lineNumber, String spec) {
+		String body;
+		try {
+			MeasuringCupsPuzzleState[] states = MeasuringCupsSolver.createStates(spec.split("\\s+"));
+			String algorithm = states[0].getCupCount() > 2 ? Config.PACKED_BFS : Config.BFS;
+			MeasuringCupsPuzzleStateList path = this.cache.retrievePath(states[0], states[1], algorithm);
+			body = path != null ? path.toString() : Config.UNSOLVABLE;
+		} catch (RuntimeException e) {
+			body = Config.INVALID_PUZZLE + e.getMessage();
+		}
+		return resultBlock(lineNumber, spec, body);
+	}
+
+	/**
+	 * @return the line number and puzzle followed by body
+	 */
+	private static String resultBlock(long lineNumber, String spec, String body) {
+		return lineNumber + "\t" + spec + "\n" + body + "\n";
+	}
+
+	/**
+	 * Hand over the result of a line, null for a skipped line, and write every
+	 * result that may be written now
+	 */
+	private synchronized void publish(long lineNumber, String result, Writer out) {
+		if (!this.ordered) {
+			write(result, out);
+			return;
+		}
+		this.pendingResults.put(lineNumber, result);
+		while (this.pendingResults.containsKey(this.nextLineToWrite)) {
+			write(this.pendingResults.remove(this.nextLineToWrite), out);
+			this.nextLineToWrite++;
+		}
+	}
+
+	private void write(String result, Writer out) {
+		if (result == null || this.writeFailure != null) {
+			return;
+		}
+		try {
+			out.write(result);
+			out.write('\n');
+			out.flush();
+		} catch (IOException e) {
+			this.writeFailure = e;
+		}
+	}
+
+	/**
+	 * @return the number of puzzles solved by the last call to solveAll
+	 */
+	public synchronized int getPuzzleCount() {
+		return this.latencies.size();
+	}
+
+	/**
+	 * @return the puzzles solved per second of wall time by the last call to
+	 *         solveAll
+	 */
+	public synchronized double getThroughput() {
+		return this.latencies.size() * 1e9 / Math.max(1, this.wallNanos);
+	}
+
+	/**
+	 * @param percentile
+	 *            a percentile between 0 and 100
+	 * @return the solve time in milliseconds below which that percentile of
+	 *         the puzzles of the last call to solveAll finished
+	 */
+	public synchronized double getLatencyMillis(double percentile) {
+		if (this.latencies.isEmpty()) {
+			return 0;
+		}
+		long[] sorted = this.latencies.toArray();
+		Arrays.sort(sorted);
+		int rank = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+		return sorted[Math.max(0, Math.min(sorted.length - 1, rank))] / 1e6;
+	}
+
+	/**
+	 * @return the cache the puzzles are solved through
+	 */
+	public MeasuringCupsPuzzleCache getCache() {
+		return this.cache;
+	}
+}
@@ -0,0 +1,261 @@
+import java.io.IOException;
+import java.math.BigInteger;
+
+/**
+ * A closed-form solver for the two-cup puzzle from (0, 0) to (target, 0) that
+ * works on long capacities without any graph search.
+ * <p>
+ * Every reachable volume is a multiple of g = gcd(capacityA, capacityB), and
+ * every multiple of g that fits in cupA is reachable, so the puzzle can be
+ * solved iff target <= capacityA and g divides target; {@link #isSolvable}
+ * checks this in O(log n). A solution repeats one of two cycles:
+ * <ul>
+ * <li>A feeds B: fill cupA, pour cupA to cupB, empty cupB whenever it is full.
+ * After k fills cupA holds k * capacityA mod capacityB (when that fits), so the
+ * smallest k with k * capacityA = target (mod capacityB) gives 2(k + e) - 1
+ * moves, where e = (k * capacityA - target) / capacityB empties of cupB</li>
+ * <li>B feeds A: fill cupB, pour cupB to cupA, empty cupA whenever it is full.
+ * The smallest k with k * capacityB = target (mod capacityA) gives 2(k + e)
+ * moves, where e = (k * capacityB - target) / capacityA empties of cupA</li>
+ * </ul>
+ * Both k are found with the extended Euclidean algorithm, the shorter cycle is
+ * chosen, and its moves are generated one at a time by {@link #step}, so a
+ * solution of any length can be streamed with constant memory.
+ */
+public class MeasuringCupsPuzzleBezout {
+
+	private final long capacityA;
+	private final long capacityB;
+	private final long target;
+	private final boolean aFeedsB;
+	private final BigInteger moveCount;
+
+	private long amountA;
+	private long amountB;
+	private String lastOperation;
+
+	/**
+	 * Construct the solution of a solvable puzzle
+	 * 
+	 * @param capacityA
+	 *            the capacity of cupA
+	 * @param capacityB
+	 *            the capacity of cupB
+	 * @param target
+	 *            the volume that must end up in cupA, with cupB empty
+	 * @throws MeasuringCupsPuzzleException
+	 *             if the puzzle cannot be solved
+	 */
+	public MeasuringCupsPuzzleBezout(long capacityA, long capacityB, long target) {
+		if (!isSolvable(capacityA, capacityB, target)) {
+			throw new MeasuringCupsPuzzleException(Config.UNSOLVABLE);
+		}
+		this.capacityA = capacityA;
+		this.capacityB = capacityB;
+		this.target = target;
+
+		if (target == 0) {
+			this.aFeedsB = true;
+			this.moveCount = BigInteger.ZERO;
+		} else if (target == capacityA) {
+			this.aFeedsB = true;
+			this.moveCount = BigInteger.ONE;
+		} else {
+			BigInteger aFeedsBMoves = cycleMoves(capacityA, capacityB, target).subtract(BigInteger.ONE);
+			BigInteger bFeedsAMoves = cycleMoves(capacityB, capacityA, target);
+			this.aFeedsB = aFeedsBMoves.compareTo(bFeedsAMoves) <= 0;
+			this.moveCount = this.aFeedsB ? aFeedsBMoves : bFeedsAMoves;
+		}
+		reset();
+	}
+
+	/**
+	 * @param a
+	 *            a non-negative number
+	 * @param b
+	 *            a non-negative number
+	 * @return the greatest common divisor of a and b; gcd(a, 0) = a
+	 */
+	public static long gcd(long a, long b) {
+		while (b != 0) {
+			long remainder = a % b;
+			a = b;
+			b = remainder;
+		}
+		return a;
+	}
+
+	/**
+	 * @param capacityA
+	 *            the capacity of cupA
+	 * @param capacityB
+	 *            the capacity of cupB
+	 * @param target
+	 *            the volume that must end up in cupA, with cupB empty
+	 * @return true if (target, 0) can be reached from (0, 0) and false
+	 *         otherwise
+	 */
+	public static boolean isSolvable(long capacityA, long capacityB, long target) {
+		if (capacityA < 0 || capacityB < 0 || target < 0 || target > capacityA) {
+			return false;
+		}
+		if (target == 0) {
+			return true;
+		}
+		return target % gcd(capacityA, capacityB) == 0;
+	}
+
+	/**
+	 * @return the number of moves of the solution, not counting the start
+	 *         state
+	 */
+	public BigInteger getMoveCount() {
+		return moveCount;
+	}
+
+	/**
+	 * Go back to the start state (0, 0)
+	 */
+	public void reset() {
+		amountA = 0;
+		amountB = 0;
+		lastOperation = Config.START;
+	}
+
+	/**
+	 * @return true if the current state is the goal (target, 0) and false
+	 *         otherwise
+	 */
+	public boolean isGoal() {
+		return amountA == target && amountB == 0;
+	}
+
+	/**
+	 * Apply the next move of the solution
+	 * 
+	 * @return true if a move has been applied and false if the current state
+	 *         already is the goal
+	 */
+	public boolean step() {
+		if (isGoal()) {
+			return false;
+		}
+		if (amountA == target) {
+			amountB = 0;
+			lastOperation = MeasuringCupsPuzzleSpace.emptyName(1);
+		} else if (aFeedsB) {
+			if (amountA == 0) {
+				amountA = capacityA;
+				lastOperation = MeasuringCupsPuzzleSpace.fillName(0);
+			} else if (amountB == capacityB) {
+				amountB = 0;
+				lastOperation = MeasuringCupsPuzzleSpace.emptyName(1);
+			} else {
+				long transferAmount = Math.min(amountA, capacityB - amountB);
+				amountA -= transferAmount;
+				amountB += transferAmount;
+				lastOperation = MeasuringCupsPuzzleSpace.pourName(0, 1);
+			}
+		} else {
+			if (amountB == 0) {
+				amountB = capacityB;
+				lastOperation = MeasuringCupsPuzzleSpace.fillName(1);
+			} else if (amountA == capacityA) {
+				amountA = 0;
+				lastOperation = MeasuringCupsPuzzleSpace.emptyName(0);
+			} else {
+				long transferAmount = Math.min(amountB, capacityA - amountA);
+				amountB -= transferAmount;
+				amountA += transferAmount;
+				lastOperation = MeasuringCupsPuzzleSpace.pourName(1, 0);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return the currentAmount of cupA
+	 */
+	public long getAmountA() {
+		return amountA;
+	}
+
+	/**
+	 * @return the currentAmount of cupB
+	 */
+	public long getAmountB() {
+		return amountB;
+	}
+
+	/**
+	 * @return the label of the move that led to the current state, e.g.
+	 *         "Fill CupA", or "Start State" before the first move
+	 */
+	public String getLastOperation() {
+		return lastOperation;
+	}
+
+	/**
+	 * Write the whole solution from the start state, one state per line in the
+	 * format of {@link MeasuringCupsPuzzleStateList#toString}, without holding
+	 * more than the current state in memory
+	 * 
+	 * @param out
+	 *            where to write the solution
+	 * @throws IOException
+	 *             if out cannot be written to
+	 */
+	public void writeTo(Appendable out) throws IOException {
+		reset();
+		do {
+			out.append(lastOperation).append('\t').append('(').append(Long.toString(amountA)).append(", ")
+					.append(Long.toString(amountB)).append(')');
+			if (!isGoal()) {
+				out.append('\n');
+			}
+		} while (step());
+	}
+
+	/**
+	 * Count the moves of the cycle in which the feeding cup is filled and
+	 * poured into the other cup, which is emptied whenever it is full, until
+	 * the target is left in the feeding cup: 2 * (fills + empties)
+	 */
+	private static BigInteger cycleMoves(long feedingCapacity, long otherCapacity, long target) {
+		long divisor = gcd(feedingCapacity, otherCapacity);
+		long modulus = otherCapacity / divisor;
+		BigInteger fills = BigInteger.valueOf(target / divisor)
+				.multiply(BigInteger.valueOf(inverse(feedingCapacity / divisor % modulus, modulus)))
+				.mod(BigInteger.valueOf(modulus));
+		if (fills.signum() == 0) {
+			fills = BigInteger.valueOf(modulus);
+		}
+		BigInteger empties = fills.multiply(BigInteger.valueOf(feedingCapacity)).subtract(BigInteger.valueOf(target))
+				.divide(BigInteger.valueOf(otherCapacity));
+		return fills.add(empties).shiftLeft(1);
+	}
+
+	/**
+	 * @return x in [0, modulus) with a * x = 1 (mod modulus), by the extended
+	 *         Euclidean algorithm; a and modulus must be coprime
+	 */
+	private static long inverse(long a, long modulus) {
+		if (modulus == 1) {
+			return 0;
+		}
+		long oldRemainder = a;
+		long remainder = modulus;
+		long oldCoefficient = 1;
+		long coefficient = 0;
+		while (remainder != 0) {
+			long quotient = oldRemainder / remainder;
+			long nextRemainder = oldRemainder - quotient * remainder;
+			oldRemainder = remainder;
+			remainder = nextRemainder;
+			long nextCoefficient = oldCoefficient - quotient * coefficient;
+			oldCoefficient = coefficient;
+			coefficient = nextCoefficient;
+		}
+		return Math.floorMod(oldCoefficient, modulus);
+	}
+}
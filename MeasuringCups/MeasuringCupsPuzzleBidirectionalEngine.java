@@ -0,0 +1,180 @@
+/**
+ * A bidirectional breadth first search over packed state keys of a
+ * {@link MeasuringCupsPuzzleSpace}. One search runs forward from the start
+ * state over successors and one runs backward from the goal state over
+ * predecessors ({@link MeasuringCupsPuzzleSpace#predecessors}). The engine
+ * always expands one complete layer of the side whose current layer is
+ * smaller, and stops after the first layer in which the two sides meet. The
+ * shortest of the paths through the meeting states found in that layer is as
+ * short as the path found by a single-ended BFS.
+ */
+public class MeasuringCupsPuzzleBidirectionalEngine implements MeasuringCupsPuzzleEngine {
+
+	private static final int NOT_FOUND = Integer.MAX_VALUE;
+
+	private final MeasuringCupsPuzzleSpace space;
+
+	private final int[] amounts;
+	private final long[] successors;
+	private final int[] successorMoves;
+	private final long[] predecessors;
+	private final int[] predecessorMoves;
+
+	// forward maps a state to its parent, backward maps a state to the next
+	// state on its way to the goal
+	private final MeasuringCupsPuzzleParentTable forward;
+	private final MeasuringCupsPuzzleParentTable backward;
+
+	private MeasuringCupsPuzzleLongList forwardLayer;
+	private MeasuringCupsPuzzleLongList backwardLayer;
+	private MeasuringCupsPuzzleLongList nextLayer;
+
+	private long meetingKey;
+	private int pathLength;
+	private MeasuringCupsPuzzleSearchStatistics statistics;
+
+	/**
+	 * Construct an engine for a state space
+	 * 
+	 * @param space
+	 *            the cups of the puzzle {@link MeasuringCupsPuzzleSpace}
+	 */
+	public MeasuringCupsPuzzleBidirectionalEngine(MeasuringCupsPuzzleSpace space) {
+		this.space = space;
+		this.amounts = new int[space.getCupCount()];
+		this.successors = new long[space.getMoveCount()];
+		this.successorMoves = new int[space.getMoveCount()];
+		this.predecessors = new long[space.getPredecessorBound()];
+		this.predecessorMoves = new int[space.getPredecessorBound()];
+		this.forward = new MeasuringCupsPuzzleParentTable();
+		this.backward = new MeasuringCupsPuzzleParentTable();
+		this.forwardLayer = new MeasuringCupsPuzzleLongList();
+		this.backwardLayer = new MeasuringCupsPuzzleLongList();
+		this.nextLayer = new MeasuringCupsPuzzleLongList();
+	}
+
+	/**
+	 * Search for a shortest path from startKey to goalKey
+	 * 
+	 * @param startKey
+	 *            the packed key of the start state
+	 * @param goalKey
+	 *            the packed key of the goal state
+	 * @param statistics
+	 *            where the work of the search is recorded
+	 * @return true if the goal can be reached and false otherwise
+	 */
+	@Override
+	public boolean search(long startKey, long goalKey, MeasuringCupsPuzzleSearchStatistics statistics) {
+		forward.clear();
+		backward.clear();
+		forwardLayer.clear();
+		backwardLayer.clear();
+		this.statistics = statistics;
+		pathLength = NOT_FOUND;
+
+		forward.put(startKey, MeasuringCupsPuzzleParentTable.NO_PARENT, 0);
+		backward.put(goalKey, MeasuringCupsPuzzleParentTable.NO_PARENT, 0);
+		if (startKey == goalKey) {
+			meetingKey = startKey;
+			pathLength = 0;
+			return true;
+		}
+		forwardLayer.add(startKey);
+		backwardLayer.add(goalKey);
+
+		int forwardDepth = 0;
+		int backwardDepth = 0;
+		while (!forwardLayer.isEmpty() && !backwardLayer.isEmpty()) {
+			if (forwardLayer.size() <= backwardLayer.size()) {
+				expandForward(forwardDepth++);
+				MeasuringCupsPuzzleLongList expanded = forwardLayer;
+				forwardLayer = nextLayer;
+				nextLayer = expanded;
+			} else {
+				expandBackward(backwardDepth++);
+				MeasuringCupsPuzzleLongList expanded = backwardLayer;
+				backwardLayer = nextLayer;
+				nextLayer = expanded;
+			}
+			statistics.recordFrontier(forwardLayer.size() + backwardLayer.size());
+			if (pathLength != NOT_FOUND) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void expandForward(int depth) {
+		nextLayer.clear();
+		for (int i = 0; i < forwardLayer.size(); i++) {
+			long currentKey = forwardLayer.get(i);
+			statistics.recordExpanded();
+			int count = space.successors(currentKey, amounts, successors, successorMoves);
+			for (int j = 0; j < count; j++) {
+				long successorKey = successors[j];
+				statistics.recordGenerated(space.getMoveKind(successorMoves[j]));
+				if (forward.put(successorKey, currentKey, depth + 1)) {
+					nextLayer.add(successorKey);
+					if (backward.contains(successorKey)) {
+						meet(successorKey, depth + 1 + backward.getDepth(successorKey));
+					}
+				} else {
+					statistics.recordDuplicate();
+				}
+			}
+		}
+	}
+
+	private void expandBackward(int depth) {
+		nextLayer.clear();
+		for (int i = 0; i < backwardLayer.size(); i++) {
+			long currentKey = backwardLayer.get(i);
+			statistics.recordExpanded();
+			int count = space.predecessors(currentKey, amounts, predecessors, predecessorMoves);
+			for (int j = 0; j < count; j++) {
+				long predecessorKey = predecessors[j];
+				statistics.recordGenerated(space.getMoveKind(predecessorMoves[j]));
+				if (backward.put(predecessorKey, currentKey, depth + 1)) {
+					nextLayer.add(predecessorKey);
+					if (forward.contains(predecessorKey)) {
+						meet(predecessorKey, depth + 1 + forward.getDepth(predecessorKey));
+					}
+				} else {
+					statistics.recordDuplicate();
+				}
+			}
+		}
+	}
+
+	private void meet(long key, int length) {
+		if (length < pathLength) {
+			pathLength = length;
+			meetingKey = key;
+		}
+	}
+
+	/**
+	 * Assuming {@link #search} returns true, return the keys of the states on
+	 * the path that was found: the forward parents from the start state to the
+	 * meeting state followed by the backward links from there to the goal
+	 * 
+	 * @return the packed keys from the start state to the goal state
+	 */
+	@Override
+	public long[] getPathKeys() {
+		long[] path = new long[pathLength + 1];
+		int meetingIndex = forward.getDepth(meetingKey);
+		long key = meetingKey;
+		for (int i = meetingIndex; i >= 0; i--) {
+			path[i] = key;
+			key = forward.getParent(key);
+		}
+		key = meetingKey;
+		for (int i = meetingIndex + 1; i < path.length; i++) {
+			key = backward.getParent(key);
+			path[i] = key;
+		}
+		return path;
+	}
+}
@@ -0,0 +1,109 @@
+import java.util.Arrays;
+
+/**
+ * A visited set of MeasuringCupsPuzzleState nodes backed by a bitmap with one
+ * bit per possible state. A state maps to the bit at its packed key in a
+ * {@link MeasuringCupsPuzzleSpace}; for two cups (amountA, amountB) maps to bit
+ * amountA * (capacityB + 1) + amountB. A membership test is a single memory
+ * access and the whole state space costs (capacityA + 1) * (capacityB + 1) / 8
+ * bytes
+ */
+public class MeasuringCupsPuzzleBitSetVisitedSet implements MeasuringCupsPuzzleVisitedSet {
+
+	private final MeasuringCupsPuzzleSpace space;
+	private final long[] bits;
+	private int size;
+
+	/**
+	 * Construct a new, empty visited set covering every state of a space
+	 * 
+	 * @param space
+	 *            the cups of the puzzle {@link MeasuringCupsPuzzleSpace}
+	 * @throws MeasuringCupsPuzzleException
+	 *             if the state space is too large to be covered by one bitmap
+	 */
+	public MeasuringCupsPuzzleBitSetVisitedSet(MeasuringCupsPuzzleSpace space) {
+		this.space = space;
+		long words = wordsFor(space);
+		if (words > Integer.MAX_VALUE) {
+			throw new MeasuringCupsPuzzleException(Config.STATE_SPACE_TOO_LARGE);
+		}
+		this.bits = new long[(int) words];
+		this.size = 0;
+	}
+
+	/**
+	 * @param space
+	 *            the cups of the puzzle {@link MeasuringCupsPuzzleSpace}
+	 * @return the number of bytes a bitmap for the space occupies
+	 */
+	public static long bytesFor(MeasuringCupsPuzzleSpace space) {
+		return wordsFor(space) * Long.BYTES;
+	}
+
+	private static long wordsFor(MeasuringCupsPuzzleSpace space) {
+		return (space.size() - 1) / Long.SIZE + 1;
+	}
+
+	/**
+	 * Mark a node as visited
+	 * 
+	 * @param state
+	 *            the node to mark
+	 * @return true if the node had not been visited before and false otherwise
+	 */
+	@Override
+	public boolean add(MeasuringCupsPuzzleState state) {
+		long index = indexOf(state);
+		int word = (int) (index >>> 6);
+		long mask = 1L << index;
+		if ((bits[word] & mask) != 0) {
+			return false;
+		}
+		bits[word] |= mask;
+		size++;
+		return true;
+	}
+
+	/**
+	 * @param state
+	 *            the node to look up
+	 * @return true if a node with the same cup volumes has been visited and
+	 *         false otherwise
+	 */
+	@Override
+	public boolean contains(MeasuringCupsPuzzleState state) {
+		long index = indexOf(state);
+		return (bits[(int) (index >>> 6)] & (1L << index)) != 0;
+	}
+
+	/**
+	 * @return the number of visited nodes
+	 */
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Update the set by removing all of its members
+	 */
+	@Override
+	public void clear() {
+		Arrays.fill(bits, 0L);
+		size = 0;
+	}
+
+	/**
+	 * @return the bytes held by the bitmap, which do not depend on how many
+	 *         nodes have been visited
+	 */
+	@Override
+	public long bytesUsed() {
+		return (long) bits.length * Long.BYTES;
+	}
+
+	private long indexOf(MeasuringCupsPuzzleState state) {
+		return space.encode(state);
+	}
+}
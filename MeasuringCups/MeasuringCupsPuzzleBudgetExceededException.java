@@ -0,0 +1,30 @@
+/**
+ * Thrown inside a search when it passes a limit of its
+ * {@link MeasuringCupsPuzzleSolveBudget}, to unwind it from wherever it is.
+ * {@link MeasuringCupsPuzzle#solve} turns it into a
+ * {@link MeasuringCupsPuzzleSolveOutcome}.
+ */
+public class MeasuringCupsPuzzleBudgetExceededException extends MeasuringCupsPuzzleException {
+	/**
+	 * 
+	 */
+	private static final long serialVersionUID = 1L;
+
+	private final MeasuringCupsPuzzleSolveBudget.Limit limit;
+
+	/**
+	 * @param limit
+	 *            the limit that was passed
+	 */
+	public MeasuringCupsPuzzleBudgetExceededException(MeasuringCupsPuzzleSolveBudget.Limit limit) {
+		super(Config.BUDGET_EXCEEDED + limit);
+		this.limit = limit;
+	}
+
+	/**
+	 * @return the limit that was passed
+	 */
+	public MeasuringCupsPuzzleSolveBudget.Limit getLimit() {
+		return limit;
+	}
+}
@@ -0,0 +1,208 @@
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache of solved puzzles that sits in front of
+ * {@link MeasuringCupsPuzzle#findPathIfExists} and
+ * {@link MeasuringCupsPuzzle#retrievePath}.
+ * <p>
+ * Puzzles are keyed by a canonical form of their capacities, start volumes
+ * and goal volumes, so equivalent instances share one entry: every volume is
+ * divided by the greatest common divisor of all of them, and the cups are
+ * sorted by (capacity, start volume, goal volume). A cached path is scaled
+ * and reordered back to the caller's cups on the way out. Puzzles without a
+ * solution are cached as well. The least recently used entry is evicted once
+ * the cache holds its maximum number of entries.
+ * <p>
+ * Entries are also keyed by algorithm, and a miss searches the canonical
+ * puzzle, not the caller's. The path returned is therefore valid for the
+ * caller's cups but not necessarily the one an uncached search in their order
+ * would return. For the shortest path algorithms it has the same length, and
+ * for UCS the same cost. A DFS path may be of any length, since the path DFS
+ * finds depends on the order of the cups.
+ */
+public class MeasuringCupsPuzzleCache {
+
+	private static final int[][] UNSOLVABLE = new int[0][];
+
+	private final int maxEntries;
+	private final LinkedHashMap<String, int[][]> entries;
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	/**
+	 * Construct an empty cache
+	 * 
+	 * @param maxEntries
+	 *            the number of solved puzzles to keep, at least one
+	 */
+	public MeasuringCupsPuzzleCache(int maxEntries) {
+		this.maxEntries = Math.max(1, maxEntries);
+		this.entries = new LinkedHashMap<String, int[][]>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, int[][]> eldest) {
+				if (size() > MeasuringCupsPuzzleCache.this.maxEntries) {
+					evictions++;
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Find a path from startState to goalState, searching only if no
+	 * equivalent puzzle has been solved with the same algorithm before
+	 * 
+	 * @param startState
+	 *            a state describing the capacities and initial volumes of
+	 *            measuring cups {@link MeasuringCupsPuzzleState}
+	 * @param goalState
+	 *            a state describing the desired end volumes of measuring cups
+	 *            {@link MeasuringCupsPuzzleState}
+	 * @param algorithm
+	 *            the search algorithm, as for
+	 *            {@link MeasuringCupsPuzzle#findPathIfExists}
+	 * @return a list of states {@link MeasuringCupsPuzzleStateList} from
+	 *         startState to goalState, or null if there is no such path
+	 * @throws MeasuringCupsPuzzleException
+	 *             if the algorithm is invalid
+	 */
+	public MeasuringCupsPuzzleStateList retrievePath(MeasuringCupsPuzzleState startState,
+			MeasuringCupsPuzzleState goalState, String algorithm) throws MeasuringCupsPuzzleException {
+		int cupCount = startState.getCupCount();
+		int[] capacities = new int[cupCount];
+		int[] startAmounts = new int[cupCount];
+		int[] goalAmounts = new int[cupCount];
+		int scale = 0;
+		for (int i = 0; i < cupCount; i++) {
+			capacities[i] = startState.getCup(i).getCapacity();
+			startAmounts[i] = startState.getCup(i).getCurrentAmount();
+			goalAmounts[i] = goalState.getCup(i).getCurrentAmount();
+			scale = gcd(gcd(gcd(scale, capacities[i]), startAmounts[i]), goalAmounts[i]);
+		}
+		if (scale == 0) {
+			scale = 1;
+		}
+		Integer[] order = new Integer[cupCount];
+		for (int i = 0; i < cupCount; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, Comparator.<Integer> comparingInt(i -> capacities[i])
+				.thenComparingInt(i -> startAmounts[i]).thenComparingInt(i -> goalAmounts[i]));
+
+		int[] canonical = new int[3 * cupCount];
+		for (int k = 0; k < cupCount; k++) {
+			canonical[k] = capacities[order[k]] / scale;
+			canonical[cupCount + k] = startAmounts[order[k]] / scale;
+			canonical[2 * cupCount + k] = goalAmounts[order[k]] / scale;
+		}
+		String key = algorithm + Arrays.toString(canonical);
+
+		int[][] steps;
+		synchronized (this) {
+			steps = this.entries.get(key);
+			if (steps != null) {
+				hits++;
+			} else {
+				misses++;
+			}
+		}
+		if (steps == null) {
+			steps = solve(canonical, cupCount, algorithm);
+			synchronized (this) {
+				this.entries.put(key, steps);
+			}
+		}
+		if (steps == UNSOLVABLE) {
+			return null;
+		}
+
+		MeasuringCupsPuzzleStateList path = new MeasuringCupsPuzzleStateList();
+		MeasuringCupsPuzzleState currentState = null;
+		for (int[] step : steps) {
+			Cup[] cups = new Cup[cupCount];
+			for (int k = 0; k < cupCount; k++) {
+				cups[order[k]] = new Cup(capacities[order[k]], step[k] * scale);
+			}
+			currentState = new MeasuringCupsPuzzleState(cups, currentState);
+			path.add(currentState);
+		}
+		return path;
+	}
+
+	private static int[][] solve(int[] canonical, int cupCount, String algorithm)
+			throws MeasuringCupsPuzzleException {
+		Cup[] startCups = new Cup[cupCount];
+		Cup[] goalCups = new Cup[cupCount];
+		for (int k = 0; k < cupCount; k++) {
+			startCups[k] = new Cup(canonical[k], canonical[cupCount + k]);
+			goalCups[k] = new Cup(canonical[k], canonical[2 * cupCount + k]);
+		}
+		MeasuringCupsPuzzle puzzle = new MeasuringCupsPuzzle(new MeasuringCupsPuzzleState(startCups, null),
+				new MeasuringCupsPuzzleState(goalCups, null));
+		if (!puzzle.findPathIfExists(algorithm)) {
+			return UNSOLVABLE;
+		}
+		MeasuringCupsPuzzleStateList path = puzzle.retrievePath();
+		int[][] steps = new int[path.size()][];
+		int index = 0;
+		for (MeasuringCupsPuzzleState state : path) {
+			int[] amounts = new int[cupCount];
+			for (int k = 0; k < cupCount; k++) {
+				amounts[k] = state.getCup(k).getCurrentAmount();
+			}
+			steps[index++] = amounts;
+		}
+		return steps;
+	}
+
+	private static int gcd(int a, int b) {
+		while (b != 0) {
+			int r = a % b;
+			a = b;
+			b = r;
+		}
+		return a;
+	}
+
+	/**
+	 * @return the number of puzzles held by the cache
+	 */
+	public synchronized int size() {
+		return this.entries.size();
+	}
+
+	/**
+	 * @return the number of lookups answered from the cache
+	 */
+	public synchronized long getHitCount() {
+		return hits;
+	}
+
+	/**
+	 * @return the number of lookups that had to search
+	 */
+	public synchronized long getMissCount() {
+		return misses;
+	}
+
+	/**
+	 * @return the number of entries dropped to stay within the maximum size
+	 */
+	public synchronized long getEvictionCount() {
+		return evictions;
+	}
+
+	/**
+	 * Remove every entry; the counters are kept
+	 */
+	public synchronized void clear() {
+		this.entries.clear();
+	}
+}
@@ -0,0 +1,25 @@
+/**
+ * A flag another thread sets to ask a running
+ * {@link MeasuringCupsPuzzle#solve} to stop. The search checks it every few
+ * hundred expanded states and returns a
+ * {@link MeasuringCupsPuzzleSolveOutcome} with status BUDGET_EXCEEDED. A
+ * token stays cancelled, so it can stop every search it is passed to.
+ */
+public class MeasuringCupsPuzzleCancellationToken {
+
+	private volatile boolean cancelled;
+
+	/**
+	 * Ask the searches holding this token to stop
+	 */
+	public void cancel() {
+		this.cancelled = true;
+	}
+
+	/**
+	 * @return true if {@link #cancel} has been called
+	 */
+	public boolean isCancelled() {
+		return this.cancelled;
+	}
+}
@@ -0,0 +1,30 @@
+/**
+ * Orders a uniform-cost (Dijkstra) search by the water a path has moved,
+ * {@link MeasuringCupsPuzzleState#getCost}, and among paths of equal cost by
+ * the number of moves. Every move costs at least nothing, so the first time
+ * the search removes a state from the frontier it has been reached along a
+ * cheapest path.
+ */
+public class MeasuringCupsPuzzleCostPriority implements MeasuringCupsPuzzlePriority {
+
+	/**
+	 * @param state
+	 *            a state of the cups of the puzzle
+	 * @return the cost of the path to state, so cheaper states come first
+	 */
+	@Override
+	public long priorityOf(MeasuringCupsPuzzleState state) {
+		return state.getCost();
+	}
+
+	/**
+	 * @param state
+	 *            a state of the cups of the puzzle
+	 * @return the depth of state, so fewer moves break ties between paths of
+	 *         equal cost
+	 */
+	@Override
+	public long tieBreakOf(MeasuringCupsPuzzleState state) {
+		return state.getDepth();
+	}
+}
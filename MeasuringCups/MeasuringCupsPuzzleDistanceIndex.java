@@ -0,0 +1,270 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A {@link MeasuringCupsPuzzleDistanceTable} saved to a file and read back
+ * through a memory mapping, so a process can answer puzzles for a few hot sets
+ * of capacities without searching and without loading the table into the
+ * heap. The paths read from an index are the ones the table, and therefore
+ * {@link MeasuringCupsPuzzle#findPathIfExists} with BFS, would return.
+ * <p>
+ * The file starts with a header of ints: the magic number 0x4D434449
+ * ("MCDI"), the format version, the number of cups and the capacity of each
+ * cup, followed by the packed key of the start state as a long, the number of
+ * entries and the largest distance, padded to a multiple of eight bytes. Then
+ * come the entries, one per reachable state in increasing key order: the
+ * packed key as a long, the entry number of its parent as an int (-1 for the
+ * start state) and its distance as an int. All values are big-endian. A
+ * lookup is a binary search over the entries, and a path is read by following
+ * the parent entries back to the start.
+ */
+public class MeasuringCupsPuzzleDistanceIndex {
+
+	public static final int MAGIC = 0x4D434449;
+	public static final int VERSION = 1;
+
+	private static final int ENTRY_BYTES = Long.BYTES + 2 * Integer.BYTES;
+	private static final int NO_PARENT = -1;
+
+	private final MeasuringCupsPuzzleSpace space;
+	private final long startKey;
+	private final int entryCount;
+	private final int maxDistance;
+	private final int entriesOffset;
+	private final MappedByteBuffer buffer;
+
+	/**
+	 * Map an index file
+	 * 
+	 * @param file
+	 *            a file written by {@link #write}
+	 * @throws IOException
+	 *             if the file cannot be read
+	 * @throws MeasuringCupsPuzzleException
+	 *             if the file is not an index of a supported version or its
+	 *             header is corrupt
+	 */
+	public MeasuringCupsPuzzleDistanceIndex(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size < 3 * Integer.BYTES || size > Integer.MAX_VALUE) {
+				throw new MeasuringCupsPuzzleException(Config.INVALID_INDEX + file);
+			}
+			this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+		}
+		if (buffer.getInt(0) != MAGIC || buffer.getInt(Integer.BYTES) != VERSION) {
+			throw new MeasuringCupsPuzzleException(Config.INVALID_INDEX + file);
+		}
+		int cupCount = buffer.getInt(2 * Integer.BYTES);
+		if (cupCount < 2 || headerBytes(cupCount) > buffer.capacity()) {
+			throw new MeasuringCupsPuzzleException(Config.INVALID_INDEX + file);
+		}
+		this.entriesOffset = (int) headerBytes(cupCount);
+		int[] capacities = new int[cupCount];
+		int offset = 3 * Integer.BYTES;
+		for (int i = 0; i < cupCount; i++) {
+			capacities[i] = buffer.getInt(offset);
+			if (capacities[i] < 0) {
+				throw new MeasuringCupsPuzzleException(Config.INVALID_INDEX + file);
+			}
+			offset += Integer.BYTES;
+		}
+		try {
+			this.space = new MeasuringCupsPuzzleSpace(capacities);
+		} catch (MeasuringCupsPuzzleException e) {
+			throw new MeasuringCupsPuzzleException(Config.INVALID_INDEX + file);
+		}
+		this.startKey = buffer.getLong(offset);
+		this.entryCount = buffer.getInt(offset + Long.BYTES);
+		this.maxDistance = buffer.getInt(offset + Long.BYTES + Integer.BYTES);
+		if (startKey < 0 || startKey >= space.size() || entryCount < 1 || maxDistance < 0
+				|| entriesOffset + (long) entryCount * ENTRY_BYTES != buffer.capacity()) {
+			throw new MeasuringCupsPuzzleException(Config.INVALID_INDEX + file);
+		}
+	}
+
+	/**
+	 * Write a distance table to an index file, replacing the file if it
+	 * exists
+	 * 
+	 * @param table
+	 *            the table to write {@link MeasuringCupsPuzzleDistanceTable}
+	 * @param file
+	 *            where the index is written
+	 * @return the size of the file in bytes
+	 * @throws IOException
+	 *             if the file cannot be written
+	 * @throws MeasuringCupsPuzzleException
+	 *             if the index would not fit in one mapping
+	 */
+	public static long write(MeasuringCupsPuzzleDistanceTable table, Path file) throws IOException {
+		MeasuringCupsPuzzleSpace space = table.getSpace();
+		int cupCount = space.getCupCount();
+		int entriesOffset = (int) headerBytes(cupCount);
+		long size = entriesOffset + (long) table.size() * ENTRY_BYTES;
+		if (size > Integer.MAX_VALUE) {
+			throw new MeasuringCupsPuzzleException(Config.STATE_SPACE_TOO_LARGE);
+		}
+		long[] sortedKeys = new long[table.size()];
+		for (int position = 0; position < sortedKeys.length; position++) {
+			sortedKeys[position] = table.getKey(position);
+		}
+		Arrays.sort(sortedKeys);
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+			out.putInt(MAGIC).putInt(VERSION).putInt(cupCount);
+			for (int i = 0; i < cupCount; i++) {
+				out.putInt(space.getCapacity(i));
+			}
+			out.putLong(table.getStartKey()).putInt(sortedKeys.length).putInt(table.getMaxDistance());
+			out.position(entriesOffset);
+			for (long key : sortedKeys) {
+				long parentKey = table.getParentKey(key);
+				out.putLong(key);
+				out.putInt(parentKey < 0 ? NO_PARENT : Arrays.binarySearch(sortedKeys, parentKey));
+				out.putInt(table.getDistance(key));
+			}
+			out.force();
+		}
+		return size;
+	}
+
+	/**
+	 * @return the bytes before the first entry: the ints of the header, the
+	 *         start key, the entry count and the largest distance, rounded up
+	 *         to a multiple of eight; a long, so that the cup count of a
+	 *         corrupt file cannot overflow it
+	 */
+	private static long headerBytes(int cupCount) {
+		long bytes = (3L + cupCount) * Integer.BYTES + Long.BYTES + 2 * Integer.BYTES;
+		return (bytes + Long.BYTES - 1) & -Long.BYTES;
+	}
+
+	/**
+	 * @return the state space the index covers
+	 */
+	public MeasuringCupsPuzzleSpace getSpace() {
+		return space;
+	}
+
+	/**
+	 * @return the packed key of the start state
+	 */
+	public long getStartKey() {
+		return startKey;
+	}
+
+	/**
+	 * @return the number of states reachable from the start state
+	 */
+	public int size() {
+		return entryCount;
+	}
+
+	/**
+	 * @return the largest distance of a reachable state
+	 */
+	public int getMaxDistance() {
+		return maxDistance;
+	}
+
+	/**
+	 * @param startState
+	 *            a state of some cups
+	 * @return true if startState has the capacities of the index and is its
+	 *         start state, so every goal of a puzzle from startState can be
+	 *         answered by the index
+	 */
+	public boolean covers(MeasuringCupsPuzzleState startState) {
+		if (startState.getCupCount() != space.getCupCount()) {
+			return false;
+		}
+		for (int i = 0; i < space.getCupCount(); i++) {
+			if (startState.getCup(i).getCapacity() != space.getCapacity(i)) {
+				return false;
+			}
+		}
+		return space.encode(startState) == startKey;
+	}
+
+	/**
+	 * @param key
+	 *            a packed state key
+	 * @return the number of moves on a shortest path from the start state to
+	 *         key, or -1 if key cannot be reached
+	 */
+	public int getDistance(long key) {
+		int entry = entryOf(key);
+		return entry < 0 ? -1 : buffer.getInt(offsetOf(entry) + Long.BYTES + Integer.BYTES);
+	}
+
+	/**
+	 * Write the path from the start state to a goal in the format of
+	 * {@link MeasuringCupsPuzzle#writePath}. Apart from an int per state of the
+	 * path, nothing is allocated
+	 * 
+	 * @param goalKey
+	 *            the packed key of the goal state
+	 * @param out
+	 *            where the path is written
+	 * @return true if the goal can be reached, and false, writing nothing,
+	 *         otherwise
+	 * @throws IOException
+	 *             if out cannot be written
+	 */
+	public boolean writePath(long goalKey, Appendable out) throws IOException {
+		int entry = entryOf(goalKey);
+		if (entry < 0) {
+			return false;
+		}
+		int[] entries = new int[getDistance(goalKey) + 1];
+		for (int i = entries.length - 1; i >= 0; i--) {
+			entries[i] = entry;
+			entry = buffer.getInt(offsetOf(entry) + Long.BYTES);
+		}
+		long previousKey = 0;
+		for (int i = 0; i < entries.length; i++) {
+			long key = buffer.getLong(offsetOf(entries[i]));
+			if (i > 0) {
+				out.append('\n');
+				out.append(space.getMoveName(space.moveBetween(previousKey, key)));
+			} else {
+				out.append(Config.START);
+			}
+			out.append('\t');
+			space.writeState(key, out);
+			previousKey = key;
+		}
+		return true;
+	}
+
+	private int offsetOf(int entry) {
+		return entriesOffset + entry * ENTRY_BYTES;
+	}
+
+	/**
+	 * @return the entry number of key, or -1 if key is not in the index
+	 */
+	private int entryOf(long key) {
+		int low = 0;
+		int high = entryCount - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			long middleKey = buffer.getLong(offsetOf(middle));
+			if (middleKey < key) {
+				low = middle + 1;
+			} else if (middleKey > key) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		return -1;
+	}
+}
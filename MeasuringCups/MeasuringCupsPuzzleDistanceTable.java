@@ -0,0 +1,220 @@
+import java.util.Arrays;
+
+/**
+ * The result of one breadth first search from a start state over every state
+ * it can reach, kept so that any number of goals can be answered without
+ * searching again.
+ * <p>
+ * The reachable states are stored in BFS order in a long array of packed keys
+ * of a {@link MeasuringCupsPuzzleSpace}, next to an int array holding the
+ * position of each state's parent and the position where each distance
+ * starts. A sorted copy of the keys with their positions finds a state in
+ * O(log n); the path to it is then read off the parent array in O(path
+ * length). The table costs 24 bytes per reachable state and the paths are the
+ * ones {@link MeasuringCupsPuzzle#findPathIfExists} finds with BFS.
+ */
+public class MeasuringCupsPuzzleDistanceTable {
+
+	private static final int NO_PARENT = -1;
+
+	private final MeasuringCupsPuzzleSpace space;
+	private final long[] keys;
+	private final int[] parents;
+	private final int[] distanceStarts;
+	private final long[] sortedKeys;
+	private final int[] sortedPositions;
+
+	/**
+	 * Run a breadth first search from a start state until every reachable
+	 * state has been visited
+	 * 
+	 * @param space
+	 *            the cups of the puzzle {@link MeasuringCupsPuzzleSpace}
+	 * @param startKey
+	 *            the packed key of the start state
+	 */
+	public MeasuringCupsPuzzleDistanceTable(MeasuringCupsPuzzleSpace space, long startKey) {
+		this.space = space;
+
+		MeasuringCupsPuzzleParentTable visited = new MeasuringCupsPuzzleParentTable();
+		MeasuringCupsPuzzleLongList order = new MeasuringCupsPuzzleLongList();
+		MeasuringCupsPuzzleLongList starts = new MeasuringCupsPuzzleLongList();
+		int[] amounts = new int[space.getCupCount()];
+		long[] successors = new long[space.getMoveCount()];
+		int[] successorMoves = new int[space.getMoveCount()];
+
+		visited.put(startKey, MeasuringCupsPuzzleParentTable.NO_PARENT, 0);
+		order.add(startKey);
+		for (int position = 0; position < order.size(); position++) {
+			long currentKey = order.get(position);
+			int depth = visited.getDepth(currentKey);
+			if (depth == starts.size()) {
+				starts.add(position);
+			}
+			int count = space.successors(currentKey, amounts, successors, successorMoves);
+			for (int i = 0; i < count; i++) {
+				if (visited.put(successors[i], currentKey, depth + 1)) {
+					order.add(successors[i]);
+				}
+			}
+		}
+		starts.add(order.size());
+
+		this.keys = order.toArray();
+		this.sortedKeys = this.keys.clone();
+		Arrays.sort(this.sortedKeys);
+		this.sortedPositions = new int[this.keys.length];
+		for (int position = 0; position < this.keys.length; position++) {
+			this.sortedPositions[Arrays.binarySearch(this.sortedKeys, this.keys[position])] = position;
+		}
+		this.parents = new int[this.keys.length];
+		for (int position = 0; position < this.keys.length; position++) {
+			long parentKey = visited.getParent(this.keys[position]);
+			this.parents[position] = parentKey == MeasuringCupsPuzzleParentTable.NO_PARENT ? NO_PARENT
+					: positionOf(parentKey);
+		}
+		this.distanceStarts = new int[starts.size()];
+		for (int i = 0; i < this.distanceStarts.length; i++) {
+			this.distanceStarts[i] = (int) starts.get(i);
+		}
+	}
+
+	/**
+	 * @return the state space the table covers
+	 */
+	public MeasuringCupsPuzzleSpace getSpace() {
+		return space;
+	}
+
+	/**
+	 * @return the packed key of the start state
+	 */
+	public long getStartKey() {
+		return keys[0];
+	}
+
+	/**
+	 * @return the number of states reachable from the start state, including
+	 *         the start state itself
+	 */
+	public int size() {
+		return keys.length;
+	}
+
+	/**
+	 * @param position
+	 *            a position in BFS order, from 0 to {@link #size} - 1
+	 * @return the packed key of the state at that position
+	 */
+	public long getKey(int position) {
+		return keys[position];
+	}
+
+	/**
+	 * @param key
+	 *            the packed key of a reachable state
+	 * @return the packed key of its parent on the path of
+	 *         {@link #getPathKeys}, or -1 for the start state
+	 * @throws MeasuringCupsPuzzleException
+	 *             if key cannot be reached
+	 */
+	public long getParentKey(long key) {
+		int position = positionOf(key);
+		if (position < 0) {
+			throw new MeasuringCupsPuzzleException(Config.UNKNOWN_STATE);
+		}
+		return parents[position] == NO_PARENT ? -1 : keys[parents[position]];
+	}
+
+	/**
+	 * @return the largest distance of a reachable state
+	 */
+	public int getMaxDistance() {
+		return distanceStarts.length - 2;
+	}
+
+	/**
+	 * @return the bytes held by the arrays of the table
+	 */
+	public long bytesUsed() {
+		return (long) keys.length * (2 * Long.BYTES + 2 * Integer.BYTES) + (long) distanceStarts.length * Integer.BYTES;
+	}
+
+	/**
+	 * @param key
+	 *            a packed state key
+	 * @return the number of moves on a shortest path from the start state to
+	 *         key, or -1 if key cannot be reached
+	 */
+	public int getDistance(long key) {
+		int position = positionOf(key);
+		if (position < 0) {
+			return -1;
+		}
+		int index = Arrays.binarySearch(distanceStarts, position);
+		return index >= 0 ? index : -index - 2;
+	}
+
+	/**
+	 * @param key
+	 *            a packed state key
+	 * @return the packed keys of a shortest path from the start state to key,
+	 *         or null if key cannot be reached
+	 */
+	public long[] getPathKeys(long key) {
+		int position = positionOf(key);
+		if (position < 0) {
+			return null;
+		}
+		long[] path = new long[getDistance(key) + 1];
+		for (int i = path.length - 1; i >= 0; i--) {
+			path[i] = keys[position];
+			position = parents[position];
+		}
+		return path;
+	}
+
+	/**
+	 * @param goalState
+	 *            a state of the cups of the puzzle
+	 * @return a list of states {@link MeasuringCupsPuzzleStateList} from the
+	 *         start state to goalState, or null if goalState cannot be reached
+	 */
+	public MeasuringCupsPuzzleStateList retrievePath(MeasuringCupsPuzzleState goalState) {
+		return toStateList(getPathKeys(space.encode(goalState)));
+	}
+
+	/**
+	 * @param targetVolume
+	 *            a volume
+	 * @return a list of states {@link MeasuringCupsPuzzleStateList} from the
+	 *         start state to the state with targetVolume in cupA and every
+	 *         other cup empty, or null if that state cannot be reached
+	 */
+	public MeasuringCupsPuzzleStateList retrievePathToVolume(int targetVolume) {
+		if (targetVolume < 0 || targetVolume > space.getCapacity(0)) {
+			return null;
+		}
+		int[] amounts = new int[space.getCupCount()];
+		amounts[0] = targetVolume;
+		return toStateList(getPathKeys(space.encode(amounts)));
+	}
+
+	private MeasuringCupsPuzzleStateList toStateList(long[] pathKeys) {
+		if (pathKeys == null) {
+			return null;
+		}
+		MeasuringCupsPuzzleStateList path = new MeasuringCupsPuzzleStateList();
+		MeasuringCupsPuzzleState currentState = null;
+		for (long key : pathKeys) {
+			currentState = space.toState(key, currentState);
+			path.add(currentState);
+		}
+		return path;
+	}
+
+	private int positionOf(long key) {
+		int index = Arrays.binarySearch(sortedKeys, key);
+		return index >= 0 ? sortedPositions[index] : -1;
+	}
+}
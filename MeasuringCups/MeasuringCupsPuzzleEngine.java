@@ -0,0 +1,11 @@
+/**
+ * Define the interface shared by the search engines that work on packed state
+ * keys of a {@link MeasuringCupsPuzzleSpace}, such as
+ * {@link MeasuringCupsPuzzlePackedEngine} and
+ * {@link MeasuringCupsPuzzleBidirectionalEngine}
+ */
+public interface MeasuringCupsPuzzleEngine {
+	boolean search(long startKey, long goalKey, MeasuringCupsPuzzleSearchStatistics statistics);
+
+	long[] getPathKeys();
+}
@@ -0,0 +1,537 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * A breadth first search over packed state keys of a
+ * {@link MeasuringCupsPuzzleSpace} that keeps its layers on disk, for spaces
+ * whose visited set does not fit in the heap. Every layer is a file of sorted
+ * keys in a temporary directory, and one more file holds the sorted union of
+ * all layers found so far.
+ * <p>
+ * A layer is expanded by streaming its file through a window buffer.
+ * Successors are collected in a buffer that fills half of the memory budget;
+ * a full buffer is sorted, stripped of duplicates and written to a run file.
+ * The runs are then merged with each other and with the visited file, which
+ * writes the keys not seen before as the next layer and the updated visited
+ * file. Duplicates are thereby detected late, against all previous layers at
+ * once, since pours cannot be undone in one move and a state may turn up
+ * again any number of layers later.
+ * <p>
+ * The other half of the memory budget holds the windows of the files open at
+ * once, which bounds the number of runs merged in one scan. When there are
+ * more runs than that, groups of them are first merged into longer runs, as
+ * many passes as it takes. Files are read and written with plain channel
+ * I/O rather than mapped, since a mapping cannot be released on demand and a
+ * mapped file cannot be truncated or deleted on every system.
+ * <p>
+ * The goal is checked as successors are generated. The path is then rebuilt
+ * backward, one scan of each layer file finding a state with a move to the
+ * state after it.
+ */
+public class MeasuringCupsPuzzleExternalEngine implements MeasuringCupsPuzzleEngine {
+
+	private static final int MIN_WINDOW_BYTES = 1 << 12;
+	private static final int MAX_WINDOW_BYTES = 1 << 20;
+	private static final int MIN_BUFFER_KEYS = 1 << 10;
+	private static final int MIN_FAN_IN = 2;
+	private static final long NO_KEY = -1L;
+
+	private final MeasuringCupsPuzzleSpace space;
+	private final Path parentDirectory;
+	private final long diskBudget;
+	private final int windowBytes;
+	private final int fanIn;
+	private final int bufferKeys;
+
+	private final int[] amounts;
+	private final long[] successors;
+	private final int[] successorMoves;
+
+	private long[] buffer;
+	private Path directory;
+	private int runCount;
+	private long diskBytes;
+	private long[] pathKeys;
+	private MeasuringCupsPuzzleSearchStatistics statistics;
+
+	/**
+	 * Construct an engine for a state space
+	 * 
+	 * @param space
+	 *            the cups of the puzzle {@link MeasuringCupsPuzzleSpace}
+	 * @param parentDirectory
+	 *            where the temporary directory holding the files of a search
+	 *            is created, or null for the default temporary directory
+	 * @param memoryBudget
+	 *            the bytes of memory to work in; half of it holds the
+	 *            successors waiting to be sorted, the rest holds the windows
+	 *            of the files open at once, up to a mebibyte each. The buffer
+	 *            never holds fewer than a thousand keys and a merge never
+	 *            reads fewer than two runs, however small the budget
+	 * @param diskBudget
+	 *            the bytes the files of a search may take at any time
+	 */
+	public MeasuringCupsPuzzleExternalEngine(MeasuringCupsPuzzleSpace space, Path parentDirectory, long memoryBudget,
+			long diskBudget) {
+		this.space = space;
+		this.parentDirectory = parentDirectory;
+		this.diskBudget = diskBudget;
+		this.amounts = new int[space.getCupCount()];
+		this.successors = new long[space.getMoveCount()];
+		this.successorMoves = new int[space.getMoveCount()];
+		long half = Math.max(memoryBudget / 2, 0);
+		long window = Math.min(Math.max(half / 32, MIN_WINDOW_BYTES), MAX_WINDOW_BYTES);
+		this.windowBytes = (int) (window & -Long.BYTES);
+		// the visited reader and the two writers of the last merge take a
+		// window each besides the runs
+		this.fanIn = (int) Math.min(Math.max(half / this.windowBytes - 3, MIN_FAN_IN), Integer.MAX_VALUE);
+		this.bufferKeys = (int) Math.max(Math.min(half / Long.BYTES, Integer.MAX_VALUE - 8), MIN_BUFFER_KEYS);
+	}
+
+	/**
+	 * Search for a shortest path from startKey to goalKey. The temporary
+	 * directory is deleted before this returns
+	 * 
+	 * @param startKey
+	 *            the packed key of the start state
+	 * @param goalKey
+	 *            the packed key of the goal state
+	 * @param statistics
+	 *            where the work of the search is recorded
+	 * @return true if the goal can be reached and false otherwise
+	 * @throws MeasuringCupsPuzzleException
+	 *             if the files would outgrow the disk budget or cannot be
+	 *             written
+	 */
+	@Override
+	public boolean search(long startKey, long goalKey, MeasuringCupsPuzzleSearchStatistics statistics) {
+		this.statistics = statistics;
+		this.pathKeys = null;
+		if (startKey == goalKey) {
+			pathKeys = new long[] { startKey };
+			return true;
+		}
+		List<Path> layers = new ArrayList<Path>();
+		try {
+			directory = parentDirectory != null ? Files.createTempDirectory(parentDirectory, "measuring-cups-")
+					: Files.createTempDirectory("measuring-cups-");
+			diskBytes = 0;
+			runCount = 0;
+			buffer = new long[bufferKeys];
+			Path visited = directory.resolve("visited");
+			Path start = directory.resolve("layer-0");
+			try (RunWriter layerWriter = new RunWriter(start); RunWriter visitedWriter = new RunWriter(visited)) {
+				layerWriter.add(startKey);
+				visitedWriter.add(startKey);
+			}
+			layers.add(start);
+			statistics.recordFrontier(1);
+
+			while (true) {
+				int depth = layers.size() - 1;
+				List<Path> runs = new ArrayList<Path>();
+				long goalParent = expand(layers.get(depth), goalKey, runs);
+				if (goalParent != NO_KEY) {
+					deleteAll(runs);
+					pathKeys = retrievePathKeys(layers, goalParent, goalKey);
+					return true;
+				}
+				if (runs.isEmpty()) {
+					return false;
+				}
+				Path layer = directory.resolve("layer-" + (depth + 1));
+				Path nextVisited = directory.resolve("visited-next");
+				runs = reduceRuns(runs);
+				long layerSize = merge(runs, visited, layer, nextVisited);
+				deleteAll(runs);
+				delete(visited);
+				Files.move(nextVisited, visited);
+				if (layerSize == 0) {
+					return false;
+				}
+				layers.add(layer);
+				statistics.recordFrontier(layerSize);
+			}
+		} catch (IOException e) {
+			throw new MeasuringCupsPuzzleException(Config.SPILL_FAILED + e.getMessage());
+		} finally {
+			buffer = null;
+			deleteDirectory();
+		}
+	}
+
+	/**
+	 * Write the successors of the states of a layer to sorted run files
+	 * 
+	 * @return the key of the state the goal was generated from, or NO_KEY if
+	 *         it was not generated
+	 */
+	private long expand(Path layer, long goalKey, List<Path> runs) throws IOException {
+		int count = 0;
+		try (RunReader reader = new RunReader(layer)) {
+			while (reader.hasNext()) {
+				long currentKey = reader.next();
+				statistics.recordExpanded();
+				int successorCount = space.successors(currentKey, amounts, successors, successorMoves);
+				for (int i = 0; i < successorCount; i++) {
+					statistics.recordGenerated(space.getMoveKind(successorMoves[i]));
+					if (successors[i] == goalKey) {
+						return currentKey;
+					}
+					buffer[count++] = successors[i];
+					if (count == buffer.length) {
+						runs.add(writeRun(count));
+						count = 0;
+					}
+				}
+			}
+		}
+		if (count > 0) {
+			runs.add(writeRun(count));
+		}
+		return NO_KEY;
+	}
+
+	/**
+	 * Sort the first count keys of the buffer and write them once each
+	 */
+	private Path writeRun(int count) throws IOException {
+		Arrays.sort(buffer, 0, count);
+		Path run = directory.resolve("run-" + runCount++);
+		int written = 0;
+		try (RunWriter writer = new RunWriter(run)) {
+			for (int i = 0; i < count; i++) {
+				if (i == 0 || buffer[i] != buffer[i - 1]) {
+					writer.add(buffer[i]);
+					written++;
+				}
+			}
+		}
+		statistics.recordDuplicates(count - written);
+		return run;
+	}
+
+	/**
+	 * Merge groups of fanIn runs into longer runs until no more than fanIn
+	 * are left, deleting the merged runs
+	 * 
+	 * @return the runs left
+	 */
+	private List<Path> reduceRuns(List<Path> runs) throws IOException {
+		while (runs.size() > fanIn) {
+			List<Path> merged = new ArrayList<Path>();
+			for (int from = 0; from < runs.size(); from += fanIn) {
+				List<Path> group = runs.subList(from, Math.min(from + fanIn, runs.size()));
+				if (group.size() == 1) {
+					merged.add(group.get(0));
+					continue;
+				}
+				Path run = directory.resolve("run-" + runCount++);
+				mergeRuns(group, run);
+				deleteAll(group);
+				merged.add(run);
+			}
+			runs = merged;
+		}
+		return runs;
+	}
+
+	/**
+	 * Merge the runs into one, writing each key once
+	 */
+	private void mergeRuns(List<Path> runs, Path run) throws IOException {
+		RunReader[] readers = new RunReader[runs.size()];
+		try (RunWriter writer = new RunWriter(run)) {
+			for (int i = 0; i < readers.length; i++) {
+				readers[i] = new RunReader(runs.get(i));
+			}
+			RunHeap heap = new RunHeap(readers);
+			long previous = NO_KEY;
+			while (!heap.isEmpty()) {
+				long key = heap.next();
+				if (key == previous) {
+					statistics.recordDuplicate();
+					continue;
+				}
+				previous = key;
+				writer.add(key);
+			}
+		} finally {
+			closeAll(readers);
+		}
+	}
+
+	/**
+	 * Merge the runs and drop the keys found in visited, writing the remaining
+	 * keys to layer and the union of visited and layer to nextVisited
+	 * 
+	 * @return the number of keys written to layer
+	 */
+	private long merge(List<Path> runs, Path visited, Path layer, Path nextVisited) throws IOException {
+		RunReader[] readers = new RunReader[runs.size()];
+		try (RunReader seen = new RunReader(visited);
+				RunWriter layerWriter = new RunWriter(layer);
+				RunWriter visitedWriter = new RunWriter(nextVisited)) {
+			for (int i = 0; i < readers.length; i++) {
+				readers[i] = new RunReader(runs.get(i));
+			}
+			RunHeap heap = new RunHeap(readers);
+			long previous = NO_KEY;
+			long layerSize = 0;
+			while (!heap.isEmpty()) {
+				long key = heap.next();
+				if (key == previous) {
+					statistics.recordDuplicate();
+					continue;
+				}
+				previous = key;
+				while (seen.hasNext() && seen.peek() < key) {
+					visitedWriter.add(seen.next());
+				}
+				if (seen.hasNext() && seen.peek() == key) {
+					statistics.recordDuplicate();
+					continue;
+				}
+				layerWriter.add(key);
+				visitedWriter.add(key);
+				layerSize++;
+			}
+			while (seen.hasNext()) {
+				visitedWriter.add(seen.next());
+			}
+			return layerSize;
+		} finally {
+			closeAll(readers);
+		}
+	}
+
+	private static void closeAll(RunReader[] readers) throws IOException {
+		for (RunReader reader : readers) {
+			if (reader != null) {
+				reader.close();
+			}
+		}
+	}
+
+	/**
+	 * Walk back from the goal, scanning each layer for a state with a move to
+	 * the state that follows it on the path
+	 */
+	private long[] retrievePathKeys(List<Path> layers, long goalParent, long goalKey) throws IOException {
+		int depth = layers.size() - 1;
+		long[] path = new long[depth + 2];
+		path[depth + 1] = goalKey;
+		path[depth] = goalParent;
+		for (int i = depth - 1; i >= 0; i--) {
+			path[i] = findParent(layers.get(i), path[i + 1]);
+		}
+		return path;
+	}
+
+	private long findParent(Path layer, long childKey) throws IOException {
+		int moveCount = space.getMoveCount();
+		try (RunReader reader = new RunReader(layer)) {
+			while (reader.hasNext()) {
+				long key = reader.next();
+				for (int move = 0; move < moveCount; move++) {
+					if (space.apply(key, move) == childKey && key != childKey) {
+						return key;
+					}
+				}
+			}
+		}
+		throw new MeasuringCupsPuzzleException(Config.UNKNOWN_STATE);
+	}
+
+	private void reserve(long bytes) {
+		diskBytes += bytes;
+		if (diskBytes > diskBudget) {
+			throw new MeasuringCupsPuzzleException(Config.DISK_BUDGET_EXCEEDED);
+		}
+	}
+
+	private void delete(Path file) throws IOException {
+		diskBytes -= Files.size(file);
+		Files.delete(file);
+	}
+
+	private void deleteAll(List<Path> files) throws IOException {
+		for (Path file : files) {
+			delete(file);
+		}
+	}
+
+	private void deleteDirectory() {
+		if (directory == null) {
+			return;
+		}
+		try (Stream<Path> files = Files.list(directory)) {
+			for (Path file : (Iterable<Path>) files::iterator) {
+				Files.deleteIfExists(file);
+			}
+			Files.deleteIfExists(directory);
+		} catch (IOException e) {
+			// the files are in a temporary directory, which the system cleans
+		}
+		directory = null;
+	}
+
+	/**
+	 * Assuming {@link #search} returns true, return the keys of the states on
+	 * the path that was found
+	 * 
+	 * @return the packed keys from the start state to the goal state
+	 */
+	@Override
+	public long[] getPathKeys() {
+		return pathKeys.clone();
+	}
+
+	/**
+	 * Read the keys of a file in order through a window buffer that is
+	 * refilled from the file as it runs empty
+	 */
+	private class RunReader implements AutoCloseable {
+		private final FileChannel channel;
+		private final ByteBuffer window;
+
+		RunReader(Path file) throws IOException {
+			this.channel = FileChannel.open(file, StandardOpenOption.READ);
+			this.window = ByteBuffer.allocate(windowBytes);
+			fill();
+		}
+
+		private void fill() throws IOException {
+			window.clear();
+			while (window.hasRemaining() && channel.read(window) >= 0) {
+				// files hold whole keys, so a full or final read ends on one
+			}
+			window.flip();
+		}
+
+		boolean hasNext() throws IOException {
+			if (!window.hasRemaining()) {
+				fill();
+			}
+			return window.hasRemaining();
+		}
+
+		long peek() {
+			return window.getLong(window.position());
+		}
+
+		long next() {
+			return window.getLong();
+		}
+
+		@Override
+		public void close() throws IOException {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Write keys to a file through a window buffer, appending it to the file
+	 * whenever it is full and once more when closed
+	 */
+	private class RunWriter implements AutoCloseable {
+		private final FileChannel channel;
+		private final ByteBuffer window;
+
+		RunWriter(Path file) throws IOException {
+			this.channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+			this.window = ByteBuffer.allocate(windowBytes);
+		}
+
+		void add(long key) throws IOException {
+			if (!window.hasRemaining()) {
+				flush();
+			}
+			window.putLong(key);
+		}
+
+		private void flush() throws IOException {
+			window.flip();
+			reserve(window.remaining());
+			while (window.hasRemaining()) {
+				channel.write(window);
+			}
+			window.clear();
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				flush();
+			} finally {
+				channel.close();
+			}
+		}
+	}
+
+	/**
+	 * A binary min-heap of run readers ordered by their next key, merging any
+	 * number of sorted runs
+	 */
+	private static class RunHeap {
+		private final RunReader[] heap;
+		private int size;
+
+		RunHeap(RunReader[] readers) throws IOException {
+			this.heap = new RunReader[readers.length];
+			for (RunReader reader : readers) {
+				if (reader.hasNext()) {
+					heap[size++] = reader;
+				}
+			}
+			for (int i = size / 2 - 1; i >= 0; i--) {
+				siftDown(i);
+			}
+		}
+
+		boolean isEmpty() {
+			return size == 0;
+		}
+
+		long next() throws IOException {
+			RunReader top = heap[0];
+			long key = top.next();
+			if (!top.hasNext()) {
+				heap[0] = heap[--size];
+				heap[size] = null;
+			}
+			if (size > 0) {
+				siftDown(0);
+			}
+			return key;
+		}
+
+		private void siftDown(int index) {
+			RunReader reader = heap[index];
+			long key = reader.peek();
+			while (true) {
+				int child = 2 * index + 1;
+				if (child >= size) {
+					break;
+				}
+				if (child + 1 < size && heap[child + 1].peek() < heap[child].peek()) {
+					child++;
+				}
+				if (heap[child].peek() >= key) {
+					break;
+				}
+				heap[index] = heap[child];
+				index = child;
+			}
+			heap[index] = reader;
+		}
+	}
+}
@@ -0,0 +1,73 @@
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A visited set of MeasuringCupsPuzzleState nodes backed by a hash table, so
+ * that membership tests take constant time instead of a scan over every
+ * processed state
+ */
+public class MeasuringCupsPuzzleHashedVisitedSet implements MeasuringCupsPuzzleVisitedSet {
+
+	// HashMap.Node header, hash, key, value and next fields with compressed
+	// references
+	private static final long BYTES_PER_ENTRY = 32;
+	private static final long BYTES_PER_BUCKET = 4;
+
+	private Set<MeasuringCupsPuzzleState> visited;
+
+	/**
+	 * Construct a new, empty visited set
+	 */
+	public MeasuringCupsPuzzleHashedVisitedSet() {
+		this.visited = new HashSet<MeasuringCupsPuzzleState>();
+	}
+
+	/**
+	 * Mark a node as visited
+	 * 
+	 * @param state
+	 *            the node to mark
+	 * @return true if the node had not been visited before and false otherwise
+	 */
+	@Override
+	public boolean add(MeasuringCupsPuzzleState state) {
+		return this.visited.add(state);
+	}
+
+	/**
+	 * @param state
+	 *            the node to look up
+	 * @return true if a node with the same cup volumes has been visited and
+	 *         false otherwise
+	 */
+	@Override
+	public boolean contains(MeasuringCupsPuzzleState state) {
+		return this.visited.contains(state);
+	}
+
+	/**
+	 * @return the number of visited nodes
+	 */
+	@Override
+	public int size() {
+		return this.visited.size();
+	}
+
+	/**
+	 * Update the set by removing all of its members
+	 */
+	@Override
+	public void clear() {
+		this.visited.clear();
+	}
+
+	/**
+	 * @return an estimate of the bytes held by the hash table itself (entries
+	 *         and bucket array, not the states they refer to)
+	 */
+	@Override
+	public long bytesUsed() {
+		long buckets = Long.highestOneBit(Math.max(16, (long) (this.visited.size() / 0.75f)) * 2 - 1);
+		return this.visited.size() * BYTES_PER_ENTRY + buckets * BYTES_PER_BUCKET;
+	}
+}
@@ -0,0 +1,109 @@
+import java.util.Arrays;
+
+/**
+ * An admissible and consistent estimate of the number of moves between a state
+ * and the goal state, used to order an A* search. The estimate is the larger
+ * of two lower bounds:
+ * <ul>
+ * <li>the true distance capped at 3: 0 for the goal, 1 if one move reaches the
+ * goal, 2 if two moves do and 3 otherwise. The states one move away are the
+ * predecessors of the goal ({@link MeasuringCupsPuzzleSpace#predecessors}) and
+ * are computed once; a state is two moves away if one of its successors is
+ * one of them</li>
+ * <li>half the number of cups whose volume differs from the goal, rounded up,
+ * since a move changes at most two cups</li>
+ * </ul>
+ * Both bounds change by at most one per move, so the estimate never drops by
+ * more than the cost of a move and the first time A* removes a state from the
+ * frontier it has been reached along a shortest path.
+ */
+public class MeasuringCupsPuzzleHeuristic implements MeasuringCupsPuzzlePriority {
+
+	private static final int DISTANCE_CAP = 3;
+
+	private final MeasuringCupsPuzzleSpace space;
+	private final long goalKey;
+	private final int[] goalAmounts;
+	private final long[] oneMoveFromGoal;
+
+	private final int[] amounts;
+	private final long[] successors;
+	private final int[] successorMoves;
+
+	/**
+	 * Construct the heuristic for one goal
+	 * 
+	 * @param space
+	 *            the cups of the puzzle {@link MeasuringCupsPuzzleSpace}
+	 * @param goalState
+	 *            the state the search is looking for
+	 */
+	public MeasuringCupsPuzzleHeuristic(MeasuringCupsPuzzleSpace space, MeasuringCupsPuzzleState goalState) {
+		this.space = space;
+		this.goalKey = space.encode(goalState);
+		this.goalAmounts = new int[space.getCupCount()];
+		space.decode(this.goalKey, this.goalAmounts);
+
+		this.amounts = new int[space.getCupCount()];
+		this.successors = new long[space.getMoveCount()];
+		this.successorMoves = new int[space.getMoveCount()];
+
+		long[] predecessors = new long[space.getPredecessorBound()];
+		int[] predecessorMoves = new int[predecessors.length];
+		int count = space.predecessors(this.goalKey, this.amounts, predecessors, predecessorMoves);
+		this.oneMoveFromGoal = Arrays.copyOf(predecessors, count);
+		Arrays.sort(this.oneMoveFromGoal);
+	}
+
+	/**
+	 * @param state
+	 *            a state of the cups of the puzzle
+	 * @return a lower bound on the number of moves from state to the goal
+	 */
+	public int estimate(MeasuringCupsPuzzleState state) {
+		long key = space.encode(state);
+		return Math.max(cappedDistance(key), (differingCups(key) + 1) / 2);
+	}
+
+	/**
+	 * Order states for A*: by estimated total path length (depth plus
+	 * {@link #estimate}) and, among equal lengths, deeper states first so that
+	 * the search commits to one of the equally good paths
+	 * 
+	 * @param state
+	 *            a state of the cups of the puzzle
+	 * @return the priority of state in a {@link MeasuringCupsPuzzlePriorityQueue}
+	 */
+	@Override
+	public long priorityOf(MeasuringCupsPuzzleState state) {
+		long depth = state.getDepth();
+		return (depth + estimate(state)) << 32 | (Integer.MAX_VALUE - depth);
+	}
+
+	private int cappedDistance(long key) {
+		if (key == goalKey) {
+			return 0;
+		}
+		if (Arrays.binarySearch(oneMoveFromGoal, key) >= 0) {
+			return 1;
+		}
+		int count = space.successors(key, amounts, successors, successorMoves);
+		for (int i = 0; i < count; i++) {
+			if (Arrays.binarySearch(oneMoveFromGoal, successors[i]) >= 0) {
+				return 2;
+			}
+		}
+		return DISTANCE_CAP;
+	}
+
+	private int differingCups(long key) {
+		space.decode(key, amounts);
+		int count = 0;
+		for (int i = 0; i < amounts.length; i++) {
+			if (amounts[i] != goalAmounts[i]) {
+				count++;
+			}
+		}
+		return count;
+	}
+}
@@ -0,0 +1,223 @@
+import java.util.Arrays;
+
+/**
+ * An iterative deepening depth first search over packed state keys of a
+ * {@link MeasuringCupsPuzzleSpace}. Depth limited searches are run with limits
+ * 0, 1, 2, ... until one reaches the goal, so the first path found is a
+ * shortest one, while the engine only keeps the current path: a packed key and
+ * the next move to try for each level. Memory therefore grows with the depth
+ * of the solution, not with the number of states.
+ * <p>
+ * A state already on the current path is never entered again. With a
+ * transposition table, a direct-mapped table of a fixed number of entries
+ * remembers the smallest depth at which each state was entered in the current
+ * iteration, and a state reached again at the same or a greater depth is
+ * skipped: everything below it has been searched with at least as many moves
+ * to spare. Colliding states simply overwrite each other, which costs pruning
+ * but never correctness.
+ * <p>
+ * The search gives up once the limit passes the depth cap. It also stops,
+ * with the goal shown unreachable, when an iteration never reaches its limit,
+ * since it has then explored every reachable state, or when the limit passes
+ * the number of states of the space less one, since no shortest path is
+ * longer than that.
+ */
+public class MeasuringCupsPuzzleIterativeDeepeningEngine implements MeasuringCupsPuzzleEngine {
+
+	private static final int INITIAL_DEPTH_CAPACITY = 1 << 6;
+	private static final long EMPTY = -1L;
+
+	private final MeasuringCupsPuzzleSpace space;
+	private final int moveCount;
+	private final int depthCap;
+
+	private final long[] tableKeys;
+	private final int[] tableDepths;
+	private final int[] tableIterations;
+	private final int tableMask;
+
+	private long[] pathKeys;
+	private int[] nextMoves;
+	private int pathLength;
+	private int iteration;
+	private boolean cutOff;
+	private boolean depthCapReached;
+
+	/**
+	 * Construct an engine for a state space
+	 * 
+	 * @param space
+	 *            the cups of the puzzle {@link MeasuringCupsPuzzleSpace}
+	 * @param depthCap
+	 *            the largest number of moves a path may have
+	 * @param transpositionTableSize
+	 *            the number of entries of the transposition table, rounded
+	 *            down to a power of two, or 0 for none
+	 */
+	public MeasuringCupsPuzzleIterativeDeepeningEngine(MeasuringCupsPuzzleSpace space, int depthCap,
+			int transpositionTableSize) {
+		if (depthCap < 0 || transpositionTableSize < 0) {
+			throw new IllegalArgumentException();
+		}
+		this.space = space;
+		this.moveCount = space.getMoveCount();
+		this.depthCap = depthCap;
+		if (transpositionTableSize > 0) {
+			int entries = Integer.highestOneBit(transpositionTableSize);
+			this.tableKeys = new long[entries];
+			this.tableDepths = new int[entries];
+			this.tableIterations = new int[entries];
+			this.tableMask = entries - 1;
+		} else {
+			this.tableKeys = null;
+			this.tableDepths = null;
+			this.tableIterations = null;
+			this.tableMask = 0;
+		}
+		this.pathKeys = new long[INITIAL_DEPTH_CAPACITY];
+		this.nextMoves = new int[INITIAL_DEPTH_CAPACITY];
+	}
+
+	/**
+	 * Search for a shortest path from startKey to goalKey of at most depthCap
+	 * moves
+	 * 
+	 * @param startKey
+	 *            the packed key of the start state
+	 * @param goalKey
+	 *            the packed key of the goal state
+	 * @param statistics
+	 *            where the work of the search is recorded
+	 * @return true if the goal can be reached within depthCap moves and false
+	 *         otherwise; see {@link #isDepthCapReached} to tell the two
+	 *         reasons for false apart
+	 */
+	@Override
+	public boolean search(long startKey, long goalKey, MeasuringCupsPuzzleSearchStatistics statistics) {
+		pathLength = -1;
+		depthCapReached = false;
+		iteration = 0;
+		if (tableKeys != null) {
+			Arrays.fill(tableKeys, EMPTY);
+		}
+		pathKeys[0] = startKey;
+		if (startKey == goalKey) {
+			pathLength = 0;
+			return true;
+		}
+		long longestPath = space.size() - 1;
+		int lastLimit = (int) Math.min(depthCap, longestPath);
+		for (int limit = 1; limit <= lastLimit; limit++) {
+			iteration++;
+			if (searchToDepth(startKey, goalKey, limit, statistics)) {
+				return true;
+			}
+			if (!cutOff) {
+				return false;
+			}
+		}
+		depthCapReached = depthCap < longestPath;
+		return false;
+	}
+
+	/**
+	 * One depth first search that does not go deeper than limit moves
+	 */
+	private boolean searchToDepth(long startKey, long goalKey, int limit, MeasuringCupsPuzzleSearchStatistics statistics) {
+		cutOff = false;
+		int depth = 0;
+		pathKeys[0] = startKey;
+		nextMoves[0] = 0;
+		enter(startKey, 0);
+		while (depth >= 0) {
+			if (depth == limit) {
+				cutOff = true;
+				depth--;
+				continue;
+			}
+			int move = nextMoves[depth]++;
+			if (move == moveCount) {
+				depth--;
+				continue;
+			}
+			long currentKey = pathKeys[depth];
+			if (move == 0) {
+				statistics.recordExpanded();
+				statistics.recordFrontier(depth + 1);
+			}
+			long successorKey = space.apply(currentKey, move);
+			if (successorKey == currentKey) {
+				continue;
+			}
+			statistics.recordGenerated(space.getMoveKind(move));
+			if (isPruned(successorKey, depth + 1)) {
+				statistics.recordDuplicate();
+				continue;
+			}
+			depth++;
+			if (depth == pathKeys.length) {
+				pathKeys = Arrays.copyOf(pathKeys, depth << 1);
+				nextMoves = Arrays.copyOf(nextMoves, depth << 1);
+			}
+			pathKeys[depth] = successorKey;
+			nextMoves[depth] = 0;
+			enter(successorKey, depth);
+			if (successorKey == goalKey) {
+				pathLength = depth;
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return true if key, reached at depth, need not be searched again
+	 */
+	private boolean isPruned(long key, int depth) {
+		if (tableKeys != null) {
+			int slot = slotOf(key);
+			if (tableKeys[slot] == key && tableIterations[slot] == iteration && tableDepths[slot] <= depth) {
+				return true;
+			}
+		}
+		for (int i = 0; i < depth; i++) {
+			if (pathKeys[i] == key) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void enter(long key, int depth) {
+		if (tableKeys != null) {
+			int slot = slotOf(key);
+			tableKeys[slot] = key;
+			tableDepths[slot] = depth;
+			tableIterations[slot] = iteration;
+		}
+	}
+
+	private int slotOf(long key) {
+		long hash = key * 0x9E3779B97F4A7C15L;
+		return (int) (hash ^ (hash >>> 32)) & tableMask;
+	}
+
+	/**
+	 * @return true if the last search stopped at the depth cap without having
+	 *         explored every reachable state, so a longer path may exist
+	 */
+	public boolean isDepthCapReached() {
+		return depthCapReached;
+	}
+
+	/**
+	 * Assuming {@link #search} returns true, return the keys of the states on
+	 * the path that was found
+	 * 
+	 * @return the packed keys from the start state to the goal state
+	 */
+	@Override
+	public long[] getPathKeys() {
+		return Arrays.copyOf(pathKeys, pathLength + 1);
+	}
+}
@@ -0,0 +1,95 @@
+/**
+ * A double ended queue of primitive long values in a growable ring buffer
+ * whose capacity is a power of two, used by the packed engines to hold their
+ * frontier of packed state keys without boxing. Values can be added at the
+ * back and removed from either end, so the same deque serves as a FIFO queue
+ * and as a LIFO stack
+ */
+public class MeasuringCupsPuzzleLongDeque {
+
+	private static final int INITIAL_CAPACITY = 1 << 8;
+
+	private long[] values;
+	private int head;
+	private int size;
+
+	/**
+	 * Construct a new, empty deque
+	 */
+	public MeasuringCupsPuzzleLongDeque() {
+		this.values = new long[INITIAL_CAPACITY];
+		this.head = 0;
+		this.size = 0;
+	}
+
+	/**
+	 * @param value
+	 *            the value to add at the back of the deque
+	 */
+	public void addLast(long value) {
+		if (size == values.length) {
+			grow();
+		}
+		values[(head + size) & (values.length - 1)] = value;
+		size++;
+	}
+
+	/**
+	 * @return the value at the front of the deque, which is removed
+	 * @throws IndexOutOfBoundsException
+	 *             if the deque is empty
+	 */
+	public long removeFirst() {
+		if (size == 0) {
+			throw new IndexOutOfBoundsException();
+		}
+		long value = values[head];
+		head = (head + 1) & (values.length - 1);
+		size--;
+		return value;
+	}
+
+	/**
+	 * @return the value at the back of the deque, which is removed
+	 * @throws IndexOutOfBoundsException
+	 *             if the deque is empty
+	 */
+	public long removeLast() {
+		if (size == 0) {
+			throw new IndexOutOfBoundsException();
+		}
+		size--;
+		return values[(head + size) & (values.length - 1)];
+	}
+
+	/**
+	 * @return the number of values in the deque
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return true if the deque is empty and false otherwise
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Update the deque by removing all of its values, keeping its capacity
+	 */
+	public void clear() {
+		head = 0;
+		size = 0;
+	}
+
+	private void grow() {
+		long[] grown = new long[values.length << 1];
+		for (int i = 0; i < size; i++) {
+			grown[i] = values[(head + i) & (values.length - 1)];
+		}
+		values = grown;
+		head = 0;
+	}
+}
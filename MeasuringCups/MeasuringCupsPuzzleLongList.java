@@ -0,0 +1,72 @@
+import java.util.Arrays;
+
+/**
+ * A growable list of primitive long values, used by the packed engines to
+ * hold layers of packed state keys without boxing
+ */
+public class MeasuringCupsPuzzleLongList {
+
+	private static final int INITIAL_CAPACITY = 1 << 4;
+
+	private long[] values;
+	private int size;
+
+	/**
+	 * Construct a new, empty list
+	 */
+	public MeasuringCupsPuzzleLongList() {
+		this.values = new long[INITIAL_CAPACITY];
+		this.size = 0;
+	}
+
+	/**
+	 * @param value
+	 *            the value to append to the list
+	 */
+	public void add(long value) {
+		if (size == values.length) {
+			values = Arrays.copyOf(values, size << 1);
+		}
+		values[size++] = value;
+	}
+
+	/**
+	 * @param index
+	 *            a position in the list
+	 * @return the value at index
+	 */
+	public long get(int index) {
+		if (index >= size) {
+			throw new IndexOutOfBoundsException();
+		}
+		return values[index];
+	}
+
+	/**
+	 * @return the number of values in the list
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return true if the list is empty and false otherwise
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Update the list by removing all of its values, keeping its capacity
+	 */
+	public void clear() {
+		size = 0;
+	}
+
+	/**
+	 * @return a new array holding the values of the list in order
+	 */
+	public long[] toArray() {
+		return Arrays.copyOf(values, size);
+	}
+}
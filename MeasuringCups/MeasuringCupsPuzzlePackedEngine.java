@@ -0,0 +1,260 @@
+/**
+ * A search engine for the measuring cups puzzle that works on packed state keys
+ * of a {@link MeasuringCupsPuzzleSpace} instead of
+ * {@link MeasuringCupsPuzzleState} objects; for two cups a state (amountA,
+ * amountB) is the single long amountA * (capacityB + 1) + amountB. Successors
+ * are generated into reusable buffers and the frontier and parent links live
+ * in primitive arrays, so expanding a state does not allocate. The frontier is
+ * a {@link MeasuringCupsPuzzleLongDeque} of (key, parent, move) triples, and
+ * the parent links are kept in {@link MeasuringCupsPuzzleParents}: a
+ * {@link MeasuringCupsPuzzleParentArray} of 4 to 8 bytes per possible state
+ * or a {@link MeasuringCupsPuzzleParentTable} holding only visited states.
+ * Only the states of the path that is found are ever built as
+ * {@link MeasuringCupsPuzzleState} objects.
+ * <p>
+ * The engine visits states in exactly the same order as
+ * {@link MeasuringCupsPuzzle} does with a {@link MeasuringCupsPuzzleQueue}
+ * (FIFO) or a {@link MeasuringCupsPuzzleStack} (LIFO): duplicates are dropped
+ * when they are removed from the frontier, and the parent of a state is the
+ * state that added the copy which is removed first. Both therefore return
+ * identical paths.
+ * <p>
+ * When checking on generation ({@link MeasuringCupsPuzzle#setCheckOnGeneration})
+ * a successor is given its parent, and compared with the goal, as soon as it
+ * is generated, and the frontier holds only the keys of new states.
+ * <p>
+ * With a {@link MeasuringCupsPuzzleSymmetry} the parent links are kept under
+ * the canonical key of each state, so a state is dropped as a duplicate when
+ * any relabeling of its interchangeable cups has been visited. The links
+ * still lead from each expanded state to the concrete state it was generated
+ * from.
+ */
+public class MeasuringCupsPuzzlePackedEngine implements MeasuringCupsPuzzleEngine {
+
+	private final MeasuringCupsPuzzleSpace space;
+	private final boolean lastInFirstOut;
+	private final boolean checkOnGeneration;
+
+	private final int[] amounts;
+	private final long[] successors;
+	private final int[] successorMoves;
+	private final MeasuringCupsPuzzleParents parents;
+	private final MeasuringCupsPuzzleSymmetry symmetry;
+
+	private final MeasuringCupsPuzzleLongDeque frontier;
+
+	private long foundGoalKey;
+
+	/**
+	 * Construct an engine for a state space
+	 * 
+	 * @param space
+	 *            the cups of the puzzle {@link MeasuringCupsPuzzleSpace}
+	 * @param lastInFirstOut
+	 *            true to expand states in DFS (stack) order and false to
+	 *            expand them in BFS (queue) order
+	 */
+	public MeasuringCupsPuzzlePackedEngine(MeasuringCupsPuzzleSpace space, boolean lastInFirstOut) {
+		this(space, lastInFirstOut, false);
+	}
+
+	/**
+	 * Construct an engine for a state space
+	 * 
+	 * @param space
+	 *            the cups of the puzzle {@link MeasuringCupsPuzzleSpace}
+	 * @param lastInFirstOut
+	 *            true to expand states in DFS (stack) order and false to
+	 *            expand them in BFS (queue) order
+	 * @param checkOnGeneration
+	 *            true to drop duplicates and test for the goal when a state is
+	 *            generated and false to do so when it is removed from the
+	 *            frontier
+	 */
+	public MeasuringCupsPuzzlePackedEngine(MeasuringCupsPuzzleSpace space, boolean lastInFirstOut,
+			boolean checkOnGeneration) {
+		this(space, lastInFirstOut, checkOnGeneration, new MeasuringCupsPuzzleParentTable());
+	}
+
+	/**
+	 * Construct an engine for a state space
+	 * 
+	 * @param space
+	 *            the cups of the puzzle {@link MeasuringCupsPuzzleSpace}
+	 * @param lastInFirstOut
+	 *            true to expand states in DFS (stack) order and false to
+	 *            expand them in BFS (queue) order
+	 * @param checkOnGeneration
+	 *            true to drop duplicates and test for the goal when a state is
+	 *            generated and false to do so when it is removed from the
+	 *            frontier
+	 * @param parents
+	 *            where the parent links of the visited states are kept
+	 */
+	public MeasuringCupsPuzzlePackedEngine(MeasuringCupsPuzzleSpace space, boolean lastInFirstOut,
+			boolean checkOnGeneration, MeasuringCupsPuzzleParents parents) {
+		this(space, lastInFirstOut, checkOnGeneration, parents, null);
+	}
+
+	/**
+	 * Construct an engine for a state space
+	 * 
+	 * @param space
+	 *            the cups of the puzzle {@link MeasuringCupsPuzzleSpace}
+	 * @param lastInFirstOut
+	 *            true to expand states in DFS (stack) order and false to
+	 *            expand them in BFS (queue) order
+	 * @param checkOnGeneration
+	 *            true to drop duplicates and test for the goal when a state is
+	 *            generated and false to do so when it is removed from the
+	 *            frontier
+	 * @param parents
+	 *            where the parent links of the visited states are kept
+	 * @param symmetry
+	 *            the interchangeable cups of the puzzle, or null to treat
+	 *            every state as distinct
+	 */
+	public MeasuringCupsPuzzlePackedEngine(MeasuringCupsPuzzleSpace space, boolean lastInFirstOut,
+			boolean checkOnGeneration, MeasuringCupsPuzzleParents parents, MeasuringCupsPuzzleSymmetry symmetry) {
+		this.space = space;
+		this.lastInFirstOut = lastInFirstOut;
+		this.checkOnGeneration = checkOnGeneration;
+		this.amounts = new int[space.getCupCount()];
+		this.successors = new long[space.getMoveCount()];
+		this.successorMoves = new int[space.getMoveCount()];
+		this.parents = parents;
+		this.symmetry = symmetry;
+		this.frontier = new MeasuringCupsPuzzleLongDeque();
+		this.foundGoalKey = MeasuringCupsPuzzleParentTable.NO_PARENT;
+	}
+
+	/**
+	 * Search for a path from startKey to goalKey
+	 * 
+	 * @param startKey
+	 *            the packed key of the start state
+	 * @param goalKey
+	 *            the packed key of the goal state
+	 * @param statistics
+	 *            where the work of the search is recorded
+	 * @return true if the goal can be reached and false otherwise
+	 */
+	@Override
+	public boolean search(long startKey, long goalKey, MeasuringCupsPuzzleSearchStatistics statistics) {
+		parents.clear();
+		frontier.clear();
+		foundGoalKey = MeasuringCupsPuzzleParentTable.NO_PARENT;
+		if (checkOnGeneration) {
+			return searchOnGeneration(startKey, goalKey, statistics);
+		}
+
+		addToFrontier(startKey, MeasuringCupsPuzzleParentTable.NO_PARENT, MeasuringCupsPuzzleParents.NO_MOVE);
+		while (!frontier.isEmpty()) {
+			long currentKey;
+			long parentKey;
+			int move;
+			if (lastInFirstOut) {
+				move = (int) frontier.removeLast();
+				parentKey = frontier.removeLast();
+				currentKey = frontier.removeLast();
+			} else {
+				currentKey = frontier.removeFirst();
+				parentKey = frontier.removeFirst();
+				move = (int) frontier.removeFirst();
+			}
+			if (!parents.add(canonicalKey(currentKey), parentKey, move)) {
+				statistics.recordDuplicate();
+				continue;
+			}
+			if (currentKey == goalKey) {
+				foundGoalKey = currentKey;
+				return true;
+			}
+			statistics.recordExpanded();
+			int count = space.successors(currentKey, amounts, successors, successorMoves);
+			for (int i = 0; i < count; i++) {
+				statistics.recordGenerated(space.getMoveKind(successorMoves[i]));
+				if (!parents.contains(canonicalKey(successors[i]))) {
+					addToFrontier(successors[i], currentKey, successorMoves[i]);
+				} else {
+					statistics.recordDuplicate();
+				}
+			}
+			statistics.recordFrontier(frontier.size() / 3);
+		}
+		return false;
+	}
+
+	private boolean searchOnGeneration(long startKey, long goalKey, MeasuringCupsPuzzleSearchStatistics statistics) {
+		parents.add(canonicalKey(startKey), MeasuringCupsPuzzleParentTable.NO_PARENT,
+				MeasuringCupsPuzzleParents.NO_MOVE);
+		if (startKey == goalKey) {
+			foundGoalKey = startKey;
+			return true;
+		}
+		frontier.addLast(startKey);
+		statistics.recordFrontier(frontier.size());
+		while (!frontier.isEmpty()) {
+			long currentKey = lastInFirstOut ? frontier.removeLast() : frontier.removeFirst();
+			statistics.recordExpanded();
+			int count = space.successors(currentKey, amounts, successors, successorMoves);
+			for (int i = 0; i < count; i++) {
+				statistics.recordGenerated(space.getMoveKind(successorMoves[i]));
+				if (!parents.add(canonicalKey(successors[i]), currentKey, successorMoves[i])) {
+					statistics.recordDuplicate();
+					continue;
+				}
+				if (successors[i] == goalKey) {
+					foundGoalKey = goalKey;
+					return true;
+				}
+				frontier.addLast(successors[i]);
+			}
+			statistics.recordFrontier(frontier.size());
+		}
+		return false;
+	}
+
+	/**
+	 * Assuming {@link #search} returns true, return the keys of the states on
+	 * the path that was found
+	 * 
+	 * @return the packed keys from the start state to the goal state
+	 */
+	@Override
+	public long[] getPathKeys() {
+		int length = 0;
+		for (long key = foundGoalKey; key != MeasuringCupsPuzzleParentTable.NO_PARENT; key = parentOf(key)) {
+			length++;
+		}
+		long[] path = new long[length];
+		for (long key = foundGoalKey; key != MeasuringCupsPuzzleParentTable.NO_PARENT; key = parentOf(key)) {
+			path[--length] = key;
+		}
+		return path;
+	}
+
+	private long parentOf(long key) {
+		return parents.getParent(canonicalKey(key));
+	}
+
+	/**
+	 * @return the key the parent links of a state are kept under
+	 */
+	private long canonicalKey(long key) {
+		return symmetry != null ? symmetry.canonicalKey(key) : key;
+	}
+
+	/**
+	 * @return the number of distinct states the last search visited
+	 */
+	public int getVisitedCount() {
+		return parents.size();
+	}
+
+	private void addToFrontier(long key, long parent, int move) {
+		frontier.addLast(key);
+		frontier.addLast(parent);
+		frontier.addLast(move);
+	}
+}
@@ -0,0 +1,237 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A level-synchronous breadth first search over packed state keys of a
+ * {@link MeasuringCupsPuzzleSpace} that expands each layer of the frontier in
+ * parallel on a {@link ForkJoinPool}.
+ * <p>
+ * Every state owns one slot of an {@link AtomicLongArray} covering the whole
+ * state space. A layer is expanded in two passes over the same chunks of the
+ * frontier. In the first pass every (frontier index, move) pair that generates
+ * an unvisited state tries to claim it, and compare-and-set keeps the smallest
+ * claim. In the second pass the pair holding the claim appends the state to
+ * its chunk's part of the next layer. Since the smallest claim is the first
+ * pair a sequential BFS would have generated the state from, and chunks are
+ * concatenated in order, layers, parents and paths are identical to PACKED_BFS
+ * and independent of thread scheduling.
+ */
+public class MeasuringCupsPuzzleParallelEngine implements MeasuringCupsPuzzleEngine {
+
+	private static final int MIN_CHUNK_SIZE = 1 << 10;
+	private static final int CHUNKS_PER_THREAD = 4;
+
+	private final MeasuringCupsPuzzleSpace space;
+	private final int parallelism;
+	private final int moveCount;
+	private final int layerShift;
+	private final long claimMask;
+
+	private AtomicLongArray links;
+	private List<long[]> layers;
+	private long foundGoalKey;
+	private AtomicLongArray generatedByKind;
+
+	/**
+	 * Construct an engine for a state space
+	 * 
+	 * @param space
+	 *            the cups of the puzzle {@link MeasuringCupsPuzzleSpace}
+	 * @param parallelism
+	 *            the number of threads expanding each layer
+	 * @throws MeasuringCupsPuzzleException
+	 *             if the state space does not fit in one array of links
+	 */
+	public MeasuringCupsPuzzleParallelEngine(MeasuringCupsPuzzleSpace space, int parallelism) {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException();
+		}
+		if (space.size() > Integer.MAX_VALUE - 8) {
+			throw new MeasuringCupsPuzzleException(Config.STATE_SPACE_TOO_LARGE);
+		}
+		this.space = space;
+		this.parallelism = parallelism;
+		this.moveCount = space.getMoveCount();
+		// a link is (layer + 1) << layerShift | (frontier index * moveCount +
+		// move); 0 marks a state that has not been reached
+		this.layerShift = Long.SIZE - Long.numberOfLeadingZeros(space.size() * moveCount);
+		this.claimMask = (1L << layerShift) - 1;
+	}
+
+	/**
+	 * Search for a shortest path from startKey to goalKey
+	 * 
+	 * @param startKey
+	 *            the packed key of the start state
+	 * @param goalKey
+	 *            the packed key of the goal state
+	 * @param statistics
+	 *            where the work of the search is recorded
+	 * @return true if the goal can be reached and false otherwise
+	 */
+	@Override
+	public boolean search(long startKey, long goalKey, MeasuringCupsPuzzleSearchStatistics statistics) {
+		links = new AtomicLongArray((int) space.size());
+		layers = new ArrayList<long[]>();
+		foundGoalKey = -1;
+		generatedByKind = new AtomicLongArray(MeasuringCupsPuzzleSpace.POUR + 1);
+
+		links.set((int) startKey, 1L << layerShift);
+		long[] frontier = new long[] { startKey };
+		layers.add(frontier);
+		if (startKey == goalKey) {
+			foundGoalKey = goalKey;
+			return true;
+		}
+
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			for (int layer = 0; frontier.length > 0; layer++) {
+				statistics.recordExpanded(frontier.length);
+				long generatedBefore = generated();
+				frontier = expand(pool, frontier, layer);
+				statistics.recordDuplicates(generated() - generatedBefore - frontier.length);
+				statistics.recordFrontier(frontier.length);
+				layers.add(frontier);
+				for (long key : frontier) {
+					if (key == goalKey) {
+						foundGoalKey = goalKey;
+						return true;
+					}
+				}
+			}
+			return false;
+		} finally {
+			pool.shutdown();
+			for (int kind = 0; kind < generatedByKind.length(); kind++) {
+				statistics.recordGenerated(kind, generatedByKind.get(kind));
+			}
+		}
+	}
+
+	/**
+	 * Expand one layer in two parallel passes, claim and collect
+	 * 
+	 * @return the next layer, in the order a sequential BFS would visit it
+	 */
+	private long[] expand(ForkJoinPool pool, long[] frontier, int layer) {
+		long nextTag = (long) (layer + 2) << layerShift;
+		int chunkSize = Math.max(MIN_CHUNK_SIZE, frontier.length / (parallelism * CHUNKS_PER_THREAD) + 1);
+
+		List<Callable<Void>> claims = new ArrayList<Callable<Void>>();
+		List<Callable<MeasuringCupsPuzzleLongList>> collections = new ArrayList<Callable<MeasuringCupsPuzzleLongList>>();
+		for (int begin = 0; begin < frontier.length; begin += chunkSize) {
+			int chunkBegin = begin;
+			int chunkEnd = Math.min(frontier.length, begin + chunkSize);
+			claims.add(() -> claim(frontier, chunkBegin, chunkEnd, nextTag));
+			collections.add(() -> collect(frontier, chunkBegin, chunkEnd, nextTag));
+		}
+		invokeAll(pool, claims);
+		List<MeasuringCupsPuzzleLongList> parts = invokeAll(pool, collections);
+
+		int size = 0;
+		for (MeasuringCupsPuzzleLongList part : parts) {
+			size += part.size();
+		}
+		long[] next = new long[size];
+		int position = 0;
+		for (MeasuringCupsPuzzleLongList part : parts) {
+			for (int i = 0; i < part.size(); i++) {
+				next[position++] = part.get(i);
+			}
+		}
+		return next;
+	}
+
+	private Void claim(long[] frontier, int begin, int end, long nextTag) {
+		int[] amounts = new int[space.getCupCount()];
+		long[] successors = new long[moveCount];
+		int[] successorMoves = new int[moveCount];
+		for (int i = begin; i < end; i++) {
+			int count = space.successors(frontier[i], amounts, successors, successorMoves);
+			for (int j = 0; j < count; j++) {
+				int slot = (int) successors[j];
+				long claim = nextTag | ((long) i * moveCount + successorMoves[j]);
+				long current = links.get(slot);
+				while ((current == 0 || (current >= nextTag && claim < current))
+						&& !links.compareAndSet(slot, current, claim)) {
+					current = links.get(slot);
+				}
+			}
+		}
+		return null;
+	}
+
+	private MeasuringCupsPuzzleLongList collect(long[] frontier, int begin, int end, long nextTag) {
+		int[] amounts = new int[space.getCupCount()];
+		long[] successors = new long[moveCount];
+		int[] successorMoves = new int[moveCount];
+		long[] generated = new long[generatedByKind.length()];
+		MeasuringCupsPuzzleLongList part = new MeasuringCupsPuzzleLongList();
+		for (int i = begin; i < end; i++) {
+			int count = space.successors(frontier[i], amounts, successors, successorMoves);
+			for (int j = 0; j < count; j++) {
+				generated[space.getMoveKind(successorMoves[j])]++;
+				long claim = nextTag | ((long) i * moveCount + successorMoves[j]);
+				if (links.get((int) successors[j]) == claim) {
+					part.add(successors[j]);
+				}
+			}
+		}
+		for (int kind = 0; kind < generated.length; kind++) {
+			generatedByKind.addAndGet(kind, generated[kind]);
+		}
+		return part;
+	}
+
+	private long generated() {
+		long total = 0;
+		for (int kind = 0; kind < generatedByKind.length(); kind++) {
+			total += generatedByKind.get(kind);
+		}
+		return total;
+	}
+
+	private static <T> List<T> invokeAll(ForkJoinPool pool, List<Callable<T>> tasks) {
+		List<T> results = new ArrayList<T>(tasks.size());
+		try {
+			for (Future<T> future : pool.invokeAll(tasks)) {
+				results.add(future.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MeasuringCupsPuzzleException(Config.INTERRUPTED);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new MeasuringCupsPuzzleException(e.getCause().toString());
+		}
+		return results;
+	}
+
+	/**
+	 * Assuming {@link #search} returns true, return the keys of the states on
+	 * the path that was found
+	 * 
+	 * @return the packed keys from the start state to the goal state
+	 */
+	@Override
+	public long[] getPathKeys() {
+		int depth = (int) (links.get((int) foundGoalKey) >>> layerShift) - 1;
+		long[] path = new long[depth + 1];
+		long key = foundGoalKey;
+		for (int layer = depth; layer > 0; layer--) {
+			path[layer] = key;
+			long claim = links.get((int) key) & claimMask;
+			key = layers.get(layer - 1)[(int) (claim / moveCount)];
+		}
+		path[0] = key;
+		return path;
+	}
+}
@@ -0,0 +1,179 @@
+import java.util.Arrays;
+
+/**
+ * Parent links stored in one array entry per possible state, indexed by the
+ * packed key of a {@link MeasuringCupsPuzzleSpace}. An entry holds parent *
+ * moveCount + move + 1, so the parent and the generating move of a state
+ * share 4 bytes; 0 marks a state that has not been visited. Spaces whose
+ * entries do not fit in an int use 8 byte entries. Looking up a state is a
+ * single memory access, and the whole space costs 4 (or 8) bytes per possible
+ * state however many states are visited
+ */
+public class MeasuringCupsPuzzleParentArray implements MeasuringCupsPuzzleParents {
+
+	private static final long MAX_ENTRIES = Integer.MAX_VALUE - 8;
+
+	private final long stateCount;
+	private final int moveCount;
+	private final int[] intEntries;
+	private final long[] longEntries;
+	private int size;
+
+	/**
+	 * Construct a new, empty array covering every state of a space
+	 * 
+	 * @param space
+	 *            the cups of the puzzle {@link MeasuringCupsPuzzleSpace}
+	 * @throws MeasuringCupsPuzzleException
+	 *             if the state space is too large to be covered by one array
+	 */
+	public MeasuringCupsPuzzleParentArray(MeasuringCupsPuzzleSpace space) {
+		this.stateCount = space.size();
+		if (this.stateCount > MAX_ENTRIES) {
+			throw new MeasuringCupsPuzzleException(Config.STATE_SPACE_TOO_LARGE);
+		}
+		this.moveCount = space.getMoveCount();
+		if (fitsInInt(space)) {
+			this.intEntries = new int[(int) this.stateCount];
+			this.longEntries = null;
+		} else {
+			this.intEntries = null;
+			this.longEntries = new long[(int) this.stateCount];
+		}
+		this.size = 0;
+	}
+
+	/**
+	 * @param space
+	 *            the cups of the puzzle {@link MeasuringCupsPuzzleSpace}
+	 * @return the number of bytes an array for the space occupies, or
+	 *         Long.MAX_VALUE if the space is too large for one array
+	 */
+	public static long bytesFor(MeasuringCupsPuzzleSpace space) {
+		if (space.size() > MAX_ENTRIES) {
+			return Long.MAX_VALUE;
+		}
+		return space.size() * (fitsInInt(space) ? Integer.BYTES : Long.BYTES);
+	}
+
+	/**
+	 * The start state is stored with the parent stateCount, one past the last
+	 * key, so the largest entry is (stateCount + 1) * moveCount
+	 */
+	private static boolean fitsInInt(MeasuringCupsPuzzleSpace space) {
+		return (space.size() + 1) * space.getMoveCount() <= Integer.MAX_VALUE;
+	}
+
+	/**
+	 * Record the parent and generating move of a state unless the state has
+	 * been visited
+	 * 
+	 * @param key
+	 *            a packed state key of the space
+	 * @param parent
+	 *            the packed key of the parent state or
+	 *            {@link MeasuringCupsPuzzleParentTable#NO_PARENT}
+	 * @param move
+	 *            the move that generated key from parent or {@link #NO_MOVE}
+	 * @return true if the key has been added and false if it was already
+	 *         present (in which case its parent is left unchanged)
+	 */
+	@Override
+	public boolean add(long key, long parent, int move) {
+		long entry = parent == MeasuringCupsPuzzleParentTable.NO_PARENT ? stateCount * moveCount + 1
+				: parent * moveCount + move + 1;
+		int index = (int) key;
+		if (intEntries != null) {
+			if (intEntries[index] != 0) {
+				return false;
+			}
+			intEntries[index] = (int) entry;
+		} else {
+			if (longEntries[index] != 0) {
+				return false;
+			}
+			longEntries[index] = entry;
+		}
+		size++;
+		return true;
+	}
+
+	/**
+	 * @param key
+	 *            a packed state key of the space
+	 * @return true if the key has been visited and false otherwise
+	 */
+	@Override
+	public boolean contains(long key) {
+		return entry(key) != 0;
+	}
+
+	/**
+	 * @param key
+	 *            a packed state key that has been visited
+	 * @return the packed key of its parent or
+	 *         {@link MeasuringCupsPuzzleParentTable#NO_PARENT}
+	 * @throws MeasuringCupsPuzzleException
+	 *             if the key has not been visited
+	 */
+	@Override
+	public long getParent(long key) {
+		long parent = (visitedEntry(key) - 1) / moveCount;
+		return parent == stateCount ? MeasuringCupsPuzzleParentTable.NO_PARENT : parent;
+	}
+
+	/**
+	 * @param key
+	 *            a packed state key that has been visited
+	 * @return the move that generated it from its parent or {@link #NO_MOVE}
+	 * @throws MeasuringCupsPuzzleException
+	 *             if the key has not been visited
+	 */
+	@Override
+	public int getMove(long key) {
+		long entry = visitedEntry(key) - 1;
+		return entry / moveCount == stateCount ? NO_MOVE : (int) (entry % moveCount);
+	}
+
+	/**
+	 * @return the number of visited states
+	 */
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Update the array by removing all of its states
+	 */
+	@Override
+	public void clear() {
+		if (intEntries != null) {
+			Arrays.fill(intEntries, 0);
+		} else {
+			Arrays.fill(longEntries, 0L);
+		}
+		size = 0;
+	}
+
+	/**
+	 * @return the bytes held by the array, which do not depend on how many
+	 *         states have been visited
+	 */
+	@Override
+	public long bytesUsed() {
+		return intEntries != null ? (long) intEntries.length * Integer.BYTES : (long) longEntries.length * Long.BYTES;
+	}
+
+	private long entry(long key) {
+		return intEntries != null ? intEntries[(int) key] : longEntries[(int) key];
+	}
+
+	private long visitedEntry(long key) {
+		long entry = entry(key);
+		if (entry == 0) {
+			throw new MeasuringCupsPuzzleException(Config.UNKNOWN_STATE);
+		}
+		return entry;
+	}
+}
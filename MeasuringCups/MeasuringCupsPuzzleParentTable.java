@@ -0,0 +1,234 @@
+import java.util.Arrays;
+
+/**
+ * A hash table from packed state keys to the packed key of their parent state,
+ * the move that generated them and their depth (number of moves from the root
+ * of the search). Keys, parents, moves and depths are stored in primitive
+ * arrays with open addressing, so recording a visited state never allocates
+ * an object. Only the visited states take space, about 48 bytes each at the
+ * maximum load factor
+ */
+public class MeasuringCupsPuzzleParentTable implements MeasuringCupsPuzzleParents {
+
+	/**
+	 * The parent recorded for the start state of a search
+	 */
+	public static final long NO_PARENT = -1L;
+
+	private static final long EMPTY = -1L;
+	private static final int INITIAL_CAPACITY = 1 << 10;
+
+	private long[] keys;
+	private long[] parents;
+	private int[] moves;
+	private int[] depths;
+	private int size;
+	private int mask;
+
+	/**
+	 * Construct a new, empty table
+	 */
+	public MeasuringCupsPuzzleParentTable() {
+		allocate(INITIAL_CAPACITY);
+	}
+
+	/**
+	 * @param entries
+	 *            a number of keys
+	 * @return the number of bytes a table holding that many keys occupies
+	 */
+	public static long bytesFor(long entries) {
+		long capacity = INITIAL_CAPACITY;
+		while (capacity < 2 * entries) {
+			capacity <<= 1;
+		}
+		return capacity * (2 * Long.BYTES + 2 * Integer.BYTES);
+	}
+
+	/**
+	 * Record the parent of a state unless the state is already in the table.
+	 * The depth of the state is recorded as 0
+	 * 
+	 * @param key
+	 *            a non-negative packed state key
+	 * @param parent
+	 *            the packed key of the parent state or {@link #NO_PARENT}
+	 * @return true if the key has been added and false if it was already
+	 *         present (in which case its parent is left unchanged)
+	 */
+	public boolean put(long key, long parent) {
+		return put(key, parent, 0);
+	}
+
+	/**
+	 * Record the parent and depth of a state unless the state is already in
+	 * the table
+	 * 
+	 * @param key
+	 *            a non-negative packed state key
+	 * @param parent
+	 *            the packed key of the parent state or {@link #NO_PARENT}
+	 * @param depth
+	 *            the number of moves between the root of the search and key
+	 * @return true if the key has been added and false if it was already
+	 *         present (in which case its parent and depth are left unchanged)
+	 */
+	public boolean put(long key, long parent, int depth) {
+		return put(key, parent, NO_MOVE, depth);
+	}
+
+	/**
+	 * Record the parent and generating move of a state unless the state is
+	 * already in the table. The depth of the state is recorded as 0
+	 * 
+	 * @param key
+	 *            a non-negative packed state key
+	 * @param parent
+	 *            the packed key of the parent state or {@link #NO_PARENT}
+	 * @param move
+	 *            the move that generated key from parent or {@link #NO_MOVE}
+	 * @return true if the key has been added and false if it was already
+	 *         present (in which case its parent and move are left unchanged)
+	 */
+	@Override
+	public boolean add(long key, long parent, int move) {
+		return put(key, parent, move, 0);
+	}
+
+	private boolean put(long key, long parent, int move, int depth) {
+		int slot = slotOf(key);
+		while (keys[slot] != EMPTY) {
+			if (keys[slot] == key) {
+				return false;
+			}
+			slot = (slot + 1) & mask;
+		}
+		keys[slot] = key;
+		parents[slot] = parent;
+		moves[slot] = move;
+		depths[slot] = depth;
+		size++;
+		if (2 * size > keys.length) {
+			grow();
+		}
+		return true;
+	}
+
+	/**
+	 * @param key
+	 *            a packed state key
+	 * @return true if the key is in the table and false otherwise
+	 */
+	@Override
+	public boolean contains(long key) {
+		return keys[find(key)] != EMPTY;
+	}
+
+	/**
+	 * @param key
+	 *            a packed state key that is in the table
+	 * @return the packed key of its parent or {@link #NO_PARENT}
+	 * @throws MeasuringCupsPuzzleException
+	 *             if the key is not in the table
+	 */
+	@Override
+	public long getParent(long key) {
+		int slot = find(key);
+		if (keys[slot] == EMPTY) {
+			throw new MeasuringCupsPuzzleException(Config.UNKNOWN_STATE);
+		}
+		return parents[slot];
+	}
+
+	/**
+	 * @param key
+	 *            a packed state key that is in the table
+	 * @return the move recorded for the key or {@link #NO_MOVE}
+	 * @throws MeasuringCupsPuzzleException
+	 *             if the key is not in the table
+	 */
+	@Override
+	public int getMove(long key) {
+		int slot = find(key);
+		if (keys[slot] == EMPTY) {
+			throw new MeasuringCupsPuzzleException(Config.UNKNOWN_STATE);
+		}
+		return moves[slot];
+	}
+
+	/**
+	 * @param key
+	 *            a packed state key that is in the table
+	 * @return the depth recorded for the key
+	 * @throws MeasuringCupsPuzzleException
+	 *             if the key is not in the table
+	 */
+	public int getDepth(long key) {
+		int slot = find(key);
+		if (keys[slot] == EMPTY) {
+			throw new MeasuringCupsPuzzleException(Config.UNKNOWN_STATE);
+		}
+		return depths[slot];
+	}
+
+	/**
+	 * @return the number of keys in the table
+	 */
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Update the table by removing all of its keys
+	 */
+	@Override
+	public void clear() {
+		Arrays.fill(keys, EMPTY);
+		size = 0;
+	}
+
+	/**
+	 * @return the bytes held by the arrays of the table
+	 */
+	@Override
+	public long bytesUsed() {
+		return (long) keys.length * (2 * Long.BYTES + 2 * Integer.BYTES);
+	}
+
+	private int find(long key) {
+		int slot = slotOf(key);
+		while (keys[slot] != EMPTY && keys[slot] != key) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private int slotOf(long key) {
+		long hash = key * 0x9E3779B97F4A7C15L;
+		return (int) (hash ^ (hash >>> 32)) & mask;
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		parents = new long[capacity];
+		moves = new int[capacity];
+		depths = new int[capacity];
+		Arrays.fill(keys, EMPTY);
+		mask = capacity - 1;
+		size = 0;
+	}
+
+	private void grow() {
+		long[] oldKeys = keys;
+		long[] oldParents = parents;
+		int[] oldMoves = moves;
+		int[] oldDepths = depths;
+		allocate(oldKeys.length << 1);
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != EMPTY) {
+				put(oldKeys[i], oldParents[i], oldMoves[i], oldDepths[i]);
+			}
+		}
+	}
+}
@@ -0,0 +1,26 @@
+/**
+ * Define the interface of the parent links kept by
+ * {@link MeasuringCupsPuzzlePackedEngine}: for every visited packed state key,
+ * the key of its parent ({@link MeasuringCupsPuzzleParentTable#NO_PARENT} for
+ * the start state) and the move of {@link MeasuringCupsPuzzleSpace} that
+ * generated it ({@link #NO_MOVE} for the start state). Shared by
+ * {@link MeasuringCupsPuzzleParentTable} and
+ * {@link MeasuringCupsPuzzleParentArray}
+ */
+public interface MeasuringCupsPuzzleParents {
+	int NO_MOVE = MeasuringCupsPuzzleSpace.NO_MOVE;
+
+	boolean add(long key, long parent, int move);
+
+	boolean contains(long key);
+
+	long getParent(long key);
+
+	int getMove(long key);
+
+	int size();
+
+	void clear();
+
+	long bytesUsed();
+}
@@ -0,0 +1,107 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs several algorithms on the same puzzle at once, each on its own thread
+ * and its own {@link MeasuringCupsPuzzle}, and collects their
+ * {@link MeasuringCupsPuzzleSolveOutcome}s in the order they finish. The wall
+ * time of each search is in the statistics of its outcome.
+ * <p>
+ * When only the first answer is wanted, the first search to solve the puzzle
+ * or to show that it is unsolvable wins, and the others are cancelled through
+ * a shared {@link MeasuringCupsPuzzleCancellationToken}. They stop at their
+ * next budget check, within a few hundred expanded states, and end with
+ * status BUDGET_EXCEEDED and limit CANCELLED.
+ */
+public class MeasuringCupsPuzzlePortfolio {
+
+	private final String[] algorithms;
+	private boolean symmetryReduction;
+
+	/**
+	 * Construct a portfolio
+	 * 
+	 * @param algorithms
+	 *            the algorithms to run, as for
+	 *            {@link MeasuringCupsPuzzle#findPathIfExists}
+	 */
+	public MeasuringCupsPuzzlePortfolio(String... algorithms) {
+		if (algorithms.length == 0) {
+			throw new IllegalArgumentException();
+		}
+		this.algorithms = algorithms.clone();
+	}
+
+	/**
+	 * Choose whether every search of the portfolio visits one state per
+	 * relabeling of interchangeable cups, as for
+	 * {@link MeasuringCupsPuzzle#setSymmetryReduction}. Off by default
+	 * 
+	 * @param symmetryReduction
+	 *            true to reduce by symmetry and false to visit every state
+	 */
+	public void setSymmetryReduction(boolean symmetryReduction) {
+		this.symmetryReduction = symmetryReduction;
+	}
+
+	/**
+	 * Run every algorithm of the portfolio on a puzzle
+	 * 
+	 * @param startState
+	 *            a state describing the capacities and initial volumes of
+	 *            measuring cups {@link MeasuringCupsPuzzleState}
+	 * @param goalState
+	 *            a state describing the desired end volumes of measuring cups
+	 *            {@link MeasuringCupsPuzzleState}
+	 * @param firstOnly
+	 *            true to cancel the other searches once one has solved the
+	 *            puzzle or shown it unsolvable, and false to let every search
+	 *            finish
+	 * @return the outcome of every algorithm in the order the searches ended;
+	 *         when firstOnly is true and some search gave an answer, the
+	 *         first outcome is that answer
+	 * @throws MeasuringCupsPuzzleException
+	 *             if an algorithm is invalid or a search fails
+	 * @throws InterruptedException
+	 *             if the calling thread is interrupted while waiting; the
+	 *             searches are cancelled
+	 */
+	public List<MeasuringCupsPuzzleSolveOutcome> solve(MeasuringCupsPuzzleState startState,
+			MeasuringCupsPuzzleState goalState, boolean firstOnly) throws InterruptedException {
+		MeasuringCupsPuzzleCancellationToken cancellationToken = new MeasuringCupsPuzzleCancellationToken();
+		MeasuringCupsPuzzleSolveBudget budget = new MeasuringCupsPuzzleSolveBudget(
+				MeasuringCupsPuzzleSolveBudget.UNLIMITED, MeasuringCupsPuzzleSolveBudget.UNLIMITED,
+				MeasuringCupsPuzzleSolveBudget.UNLIMITED, cancellationToken);
+		ExecutorService workers = Executors.newFixedThreadPool(algorithms.length);
+		ExecutorCompletionService<MeasuringCupsPuzzleSolveOutcome> searches = new ExecutorCompletionService<MeasuringCupsPuzzleSolveOutcome>(
+				workers);
+		List<MeasuringCupsPuzzleSolveOutcome> outcomes = new ArrayList<MeasuringCupsPuzzleSolveOutcome>();
+		try {
+			for (String algorithm : algorithms) {
+				MeasuringCupsPuzzle measuringCupsPuzzle = new MeasuringCupsPuzzle(startState, goalState);
+				measuringCupsPuzzle.setSymmetryReduction(symmetryReduction);
+				searches.submit(() -> measuringCupsPuzzle.solve(algorithm, budget));
+			}
+			for (int i = 0; i < algorithms.length; i++) {
+				MeasuringCupsPuzzleSolveOutcome outcome = searches.take().get();
+				outcomes.add(outcome);
+				if (firstOnly && outcome.getStatus() != MeasuringCupsPuzzleSolveOutcome.Status.BUDGET_EXCEEDED) {
+					cancellationToken.cancel();
+				}
+			}
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new MeasuringCupsPuzzleException(e.getCause().toString());
+		} finally {
+			cancellationToken.cancel();
+			workers.shutdown();
+		}
+		return outcomes;
+	}
+}
@@ -0,0 +1,12 @@
+/**
+ * Define the ordering used by {@link MeasuringCupsPuzzlePriorityQueue}: states
+ * with a lower priority are removed first, and among equal priorities states
+ * with a lower tie break
+ */
+public interface MeasuringCupsPuzzlePriority {
+	long priorityOf(MeasuringCupsPuzzleState state);
+
+	default long tieBreakOf(MeasuringCupsPuzzleState state) {
+		return 0;
+	}
+}
@@ -0,0 +1,179 @@
+import java.util.Arrays;
+
+/**
+ * A priority queue of MeasuringCupsPuzzleState nodes on a binary heap. Nodes
+ * are ordered by a {@link MeasuringCupsPuzzlePriority} computed once when they
+ * are added and kept, with their tie breaks, in primitive arrays next to the
+ * heap; nodes with equal priorities and tie breaks are removed in FIFO order
+ */
+public class MeasuringCupsPuzzlePriorityQueue implements MeasuringCupsPuzzleADT {
+
+	private static final int INITIAL_CAPACITY = 1 << 4;
+
+	private final MeasuringCupsPuzzlePriority priority;
+
+	private MeasuringCupsPuzzleState[] heap;
+	private long[] priorities;
+	private long[] tieBreaks;
+	private long[] sequenceNumbers;
+	private int size;
+	private long nextSequenceNumber;
+
+	/**
+	 * Construct a new priority queue
+	 * 
+	 * @param priority
+	 *            the ordering of the nodes; lower priorities are removed first
+	 */
+	public MeasuringCupsPuzzlePriorityQueue(MeasuringCupsPuzzlePriority priority) {
+		this.priority = priority;
+		this.heap = new MeasuringCupsPuzzleState[INITIAL_CAPACITY];
+		this.priorities = new long[INITIAL_CAPACITY];
+		this.tieBreaks = new long[INITIAL_CAPACITY];
+		this.sequenceNumbers = new long[INITIAL_CAPACITY];
+		this.size = 0;
+		this.nextSequenceNumber = 0;
+	}
+
+	/**
+	 * Add a node to the queue
+	 * 
+	 * @param state
+	 *            the node to add
+	 */
+	@Override
+	public void add(MeasuringCupsPuzzleState state) {
+		if (size == heap.length) {
+			grow();
+		}
+		long statePriority = priority.priorityOf(state);
+		long tieBreak = priority.tieBreakOf(state);
+		long sequenceNumber = nextSequenceNumber++;
+		int index = size++;
+		while (index > 0) {
+			int parent = (index - 1) >>> 1;
+			if (!less(statePriority, tieBreak, sequenceNumber, parent)) {
+				break;
+			}
+			move(parent, index);
+			index = parent;
+		}
+		set(index, state, statePriority, tieBreak, sequenceNumber);
+	}
+
+	/**
+	 * @return the node with the lowest priority, which has been removed from
+	 *         the queue as a result of this function call, or null if the
+	 *         queue is empty
+	 */
+	@Override
+	public MeasuringCupsPuzzleState remove() {
+		if (size == 0) {
+			return null;
+		}
+		MeasuringCupsPuzzleState result = heap[0];
+		size--;
+		MeasuringCupsPuzzleState last = heap[size];
+		long lastPriority = priorities[size];
+		long lastTieBreak = tieBreaks[size];
+		long lastSequenceNumber = sequenceNumbers[size];
+		heap[size] = null;
+
+		int index = 0;
+		int half = size >>> 1;
+		while (index < half) {
+			int child = 2 * index + 1;
+			if (child + 1 < size
+					&& less(priorities[child + 1], tieBreaks[child + 1], sequenceNumbers[child + 1], child)) {
+				child++;
+			}
+			if (!less(priorities[child], tieBreaks[child], sequenceNumbers[child], lastPriority, lastTieBreak,
+					lastSequenceNumber)) {
+				break;
+			}
+			move(child, index);
+			index = child;
+		}
+		if (size > 0) {
+			set(index, last, lastPriority, lastTieBreak, lastSequenceNumber);
+		}
+		return result;
+	}
+
+	/**
+	 * @return true if the queue is empty and false otherwise
+	 */
+	@Override
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * @return the number of states in the queue
+	 */
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Update the queue by removing all of its members.
+	 */
+	@Override
+	public void clear() {
+		for (int i = 0; i < size; i++) {
+			heap[i] = null;
+		}
+		size = 0;
+	}
+
+	/**
+	 * @return a String representation of the queue by visiting each member in
+	 *         heap order (not removal order), calling its toString, and
+	 *         joining the resulting Strings with a space character
+	 */
+	public String toString() {
+		StringBuilder result = new StringBuilder();
+		for (int i = 0; i < size; i++) {
+			if (i > 0) {
+				result.append(" ");
+			}
+			result.append(heap[i].toString());
+		}
+		return result.toString();
+	}
+
+	private boolean less(long statePriority, long tieBreak, long sequenceNumber, int index) {
+		return less(statePriority, tieBreak, sequenceNumber, priorities[index], tieBreaks[index],
+				sequenceNumbers[index]);
+	}
+
+	private static boolean less(long priorityA, long tieBreakA, long sequenceNumberA, long priorityB, long tieBreakB,
+			long sequenceNumberB) {
+		int order = Long.compare(priorityA, priorityB);
+		if (order == 0) {
+			order = Long.compare(tieBreakA, tieBreakB);
+		}
+		return order < 0 || (order == 0 && sequenceNumberA < sequenceNumberB);
+	}
+
+	private void move(int from, int to) {
+		set(to, heap[from], priorities[from], tieBreaks[from], sequenceNumbers[from]);
+	}
+
+	private void set(int index, MeasuringCupsPuzzleState state, long statePriority, long tieBreak,
+			long sequenceNumber) {
+		heap[index] = state;
+		priorities[index] = statePriority;
+		tieBreaks[index] = tieBreak;
+		sequenceNumbers[index] = sequenceNumber;
+	}
+
+	private void grow() {
+		int capacity = heap.length << 1;
+		heap = Arrays.copyOf(heap, capacity);
+		priorities = Arrays.copyOf(priorities, capacity);
+		tieBreaks = Arrays.copyOf(tieBreaks, capacity);
+		sequenceNumbers = Arrays.copyOf(sequenceNumbers, capacity);
+	}
+}
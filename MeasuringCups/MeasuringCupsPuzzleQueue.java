@@ -1,19 +1,22 @@
-import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.Queue;
-
 /**
- * A queue of MeasuringCupsPuzzleState nodes
+ * A queue of MeasuringCupsPuzzleState nodes, kept in a growable ring buffer
+ * whose capacity is a power of two
  */
 public class MeasuringCupsPuzzleQueue implements MeasuringCupsPuzzleADT {
 
-	Queue<MeasuringCupsPuzzleState> queue;
+	private static final int INITIAL_CAPACITY = 1 << 4;
+
+	private MeasuringCupsPuzzleState[] queue;
+	private int head;
+	private int size;
 
 	/**
 	 * Construct a new queue
 	 */
 	public MeasuringCupsPuzzleQueue() {
-		this.queue = new LinkedList<MeasuringCupsPuzzleState>();
+		this.queue = new MeasuringCupsPuzzleState[INITIAL_CAPACITY];
+		this.head = 0;
+		this.size = 0;
 	}
 
 	/**
@@ -24,7 +27,11 @@ public class MeasuringCupsPuzzleQueue implements MeasuringCupsPuzzleADT {
 	 */
 	@Override
 	public void add(MeasuringCupsPuzzleState state) {
-		this.queue.add(state);
+		if (this.size == this.queue.length) {
+			grow();
+		}
+		this.queue[(this.head + this.size) & (this.queue.length - 1)] = state;
+		this.size++;
 	}
 
 	/**
@@ -32,11 +39,18 @@ public class MeasuringCupsPuzzleQueue implements MeasuringCupsPuzzleADT {
 	 * 
 	 * @return the least recent node that has been inserted into the queue;
 	 *         which is now removed from the queue as a result of this function
-	 *         call
+	 *         call, or null if the queue is empty
 	 */
 	@Override
 	public MeasuringCupsPuzzleState remove() {
-		return queue.poll();
+		if (this.size == 0) {
+			return null;
+		}
+		MeasuringCupsPuzzleState state = this.queue[this.head];
+		this.queue[this.head] = null;
+		this.head = (this.head + 1) & (this.queue.length - 1);
+		this.size--;
+		return state;
 	}
 
 	/**
@@ -44,7 +58,15 @@ public class MeasuringCupsPuzzleQueue implements MeasuringCupsPuzzleADT {
 	 */
 	@Override
 	public boolean isEmpty() {
-		return this.queue.isEmpty();
+		return this.size == 0;
+	}
+
+	/**
+	 * @return the number of nodes in the queue
+	 */
+	@Override
+	public int size() {
+		return this.size;
 	}
 
 	/**
@@ -52,7 +74,24 @@ public class MeasuringCupsPuzzleQueue implements MeasuringCupsPuzzleADT {
 	 */
 	@Override
 	public void clear() {
-		this.queue.clear();
+		for (int i = 0; i < this.size; i++) {
+			this.queue[(this.head + i) & (this.queue.length - 1)] = null;
+		}
+		this.head = 0;
+		this.size = 0;
+	}
+
+	/**
+	 * Double the capacity of the ring buffer, moving the nodes to the start of
+	 * the new buffer in FIFO order
+	 */
+	private void grow() {
+		MeasuringCupsPuzzleState[] grown = new MeasuringCupsPuzzleState[this.queue.length << 1];
+		for (int i = 0; i < this.size; i++) {
+			grown[i] = this.queue[(this.head + i) & (this.queue.length - 1)];
+		}
+		this.queue = grown;
+		this.head = 0;
 	}
 
 	/**
@@ -62,14 +101,13 @@ public class MeasuringCupsPuzzleQueue implements MeasuringCupsPuzzleADT {
 	 *         space character
 	 */
 	public String toString() {
-		Iterator<MeasuringCupsPuzzleState> queueIterator = this.queue.iterator();
-		String result = "";
-		while (queueIterator.hasNext()) {
-			result += queueIterator.next().toString();
-			if (queueIterator.hasNext()) {
-				result += " ";
+		StringBuilder result = new StringBuilder();
+		for (int i = 0; i < this.size; i++) {
+			if (i > 0) {
+				result.append(' ');
 			}
+			result.append(this.queue[(this.head + i) & (this.queue.length - 1)]);
 		}
-		return result;
+		return result.toString();
 	}
 }
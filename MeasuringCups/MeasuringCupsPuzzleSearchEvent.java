@@ -0,0 +1,54 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A JFR event committed at the end of every
+ * {@link MeasuringCupsPuzzle#findPathIfExists} call, carrying its
+ * {@link MeasuringCupsPuzzleSearchStatistics}. Enable it in a recording with
+ * jdk.jfr settings for MeasuringCups.Search; its duration is the wall time of
+ * the search.
+ */
+@Name("MeasuringCups.Search")
+@Label("Measuring Cups Search")
+@Category("Measuring Cups")
+@Description("One search for a path through the states of a measuring cups puzzle")
+class MeasuringCupsPuzzleSearchEvent extends Event {
+
+	@Label("Algorithm")
+	String algorithm;
+
+	@Label("Puzzle")
+	String puzzle;
+
+	@Label("Goal Found")
+	boolean goalFound;
+
+	@Label("Nodes Generated")
+	long nodesGenerated;
+
+	@Label("Nodes Expanded")
+	long nodesExpanded;
+
+	@Label("Duplicates Skipped")
+	long duplicatesSkipped;
+
+	@Label("Peak Frontier")
+	long peakFrontier;
+
+	@Label("Fills")
+	long fills;
+
+	@Label("Empties")
+	long empties;
+
+	@Label("Pours")
+	long pours;
+
+	@Label("Allocated")
+	@DataAmount
+	long allocatedBytes;
+}
@@ -0,0 +1,296 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * How much work one call of {@link MeasuringCupsPuzzle#findPathIfExists} did.
+ * The search records into the statistics while it runs; once it returns they
+ * no longer change, and a {@link MeasuringCupsPuzzleSearchEvent} with the same
+ * figures is committed to a running JFR recording.
+ * <p>
+ * A state is generated each time a move is applied to an expanded state and
+ * changes it. A duplicate is a generated state that was dropped, when it was
+ * generated or when it left the frontier, because it had been visited
+ * before. The frontier is the {@link MeasuringCupsPuzzleADT} or, for the
+ * engines, the keys waiting to be expanded. Allocated bytes are counted for
+ * the calling thread only, so the worker threads of PARALLEL_BFS are not
+ * included.
+ * <p>
+ * Statistics made with a {@link MeasuringCupsPuzzleSolveBudget} also enforce
+ * it: recording an expansion that passes a limit throws a
+ * {@link MeasuringCupsPuzzleBudgetExceededException}.
+ */
+public class MeasuringCupsPuzzleSearchStatistics {
+
+	private static final long CHECK_INTERVAL = 256;
+
+	private final String algorithm;
+	private final String puzzle;
+	private final long[] movesByKind;
+	private long nodesExpanded;
+	private long duplicatesSkipped;
+	private long peakFrontier;
+	private boolean goalFound;
+
+	private final long startNanos;
+	private final long startAllocatedBytes;
+	private long wallNanos;
+	private long allocatedBytes;
+	private final MeasuringCupsPuzzleSearchEvent event;
+
+	private final MeasuringCupsPuzzleSolveBudget budget;
+	private long nextCheck;
+
+	/**
+	 * Start the statistics of a search
+	 * 
+	 * @param algorithm
+	 *            the algorithm of the search
+	 * @param puzzle
+	 *            a description of the puzzle being solved
+	 */
+	public MeasuringCupsPuzzleSearchStatistics(String algorithm, String puzzle) {
+		this(algorithm, puzzle, null);
+	}
+
+	/**
+	 * Start the statistics of a search that must stay within a budget
+	 * 
+	 * @param algorithm
+	 *            the algorithm of the search
+	 * @param puzzle
+	 *            a description of the puzzle being solved
+	 * @param budget
+	 *            the limits of the search, or null for none
+	 */
+	public MeasuringCupsPuzzleSearchStatistics(String algorithm, String puzzle, MeasuringCupsPuzzleSolveBudget budget) {
+		this.algorithm = algorithm;
+		this.puzzle = puzzle;
+		this.movesByKind = new long[MeasuringCupsPuzzleSpace.POUR + 1];
+		this.event = new MeasuringCupsPuzzleSearchEvent();
+		this.event.begin();
+		this.startAllocatedBytes = allocatedBytesOfCurrentThread();
+		this.startNanos = System.nanoTime();
+		this.budget = budget;
+		this.nextCheck = budget != null ? 0 : Long.MAX_VALUE;
+	}
+
+	/**
+	 * Record the expansion of a state
+	 * 
+	 * @throws MeasuringCupsPuzzleBudgetExceededException
+	 *             if the expansion passes a limit of the budget
+	 */
+	void recordExpanded() {
+		if (++nodesExpanded >= nextCheck) {
+			checkBudget();
+		}
+	}
+
+	/**
+	 * @param count
+	 *            the number of states expanded
+	 * @throws MeasuringCupsPuzzleBudgetExceededException
+	 *             if the expansions pass a limit of the budget
+	 */
+	void recordExpanded(long count) {
+		nodesExpanded += count;
+		if (nodesExpanded >= nextCheck) {
+			checkBudget();
+		}
+	}
+
+	/**
+	 * Throw if the search has passed a limit of its budget, and otherwise
+	 * schedule the next check
+	 * 
+	 * @throws MeasuringCupsPuzzleBudgetExceededException
+	 *             if a limit has been passed
+	 */
+	void checkBudget() {
+		if (budget == null) {
+			return;
+		}
+		long maxNodesExpanded = budget.getMaxNodesExpanded();
+		if (nodesExpanded > maxNodesExpanded) {
+			throw new MeasuringCupsPuzzleBudgetExceededException(MeasuringCupsPuzzleSolveBudget.Limit.NODES);
+		}
+		MeasuringCupsPuzzleSolveBudget.Limit limit = budget
+				.exceededLimit(allocatedBytesOfCurrentThread() - startAllocatedBytes);
+		if (limit != null) {
+			throw new MeasuringCupsPuzzleBudgetExceededException(limit);
+		}
+		nextCheck = nodesExpanded + CHECK_INTERVAL;
+		if (maxNodesExpanded != MeasuringCupsPuzzleSolveBudget.UNLIMITED) {
+			nextCheck = Math.min(nextCheck, maxNodesExpanded + 1);
+		}
+	}
+
+	/**
+	 * @param moveKind
+	 *            {@link MeasuringCupsPuzzleSpace#FILL},
+	 *            {@link MeasuringCupsPuzzleSpace#EMPTY} or
+	 *            {@link MeasuringCupsPuzzleSpace#POUR}, the kind of move that
+	 *            generated a state
+	 */
+	void recordGenerated(int moveKind) {
+		movesByKind[moveKind]++;
+	}
+
+	/**
+	 * @param moveKind
+	 *            the kind of move that generated the states
+	 * @param count
+	 *            the number of states generated
+	 */
+	void recordGenerated(int moveKind, long count) {
+		movesByKind[moveKind] += count;
+	}
+
+	/**
+	 * Record a generated state dropped because it had been visited
+	 */
+	void recordDuplicate() {
+		duplicatesSkipped++;
+	}
+
+	/**
+	 * @param count
+	 *            the number of generated states dropped
+	 */
+	void recordDuplicates(long count) {
+		duplicatesSkipped += count;
+	}
+
+	/**
+	 * @param size
+	 *            the current number of states in the frontier
+	 */
+	void recordFrontier(long size) {
+		if (size > peakFrontier) {
+			peakFrontier = size;
+		}
+	}
+
+	/**
+	 * Stop the clocks and commit the JFR event
+	 * 
+	 * @param goalFound
+	 *            the result of the search
+	 */
+	void finish(boolean goalFound) {
+		this.wallNanos = System.nanoTime() - startNanos;
+		this.allocatedBytes = Math.max(0, allocatedBytesOfCurrentThread() - startAllocatedBytes);
+		this.goalFound = goalFound;
+		this.event.end();
+		if (this.event.shouldCommit()) {
+			this.event.algorithm = algorithm;
+			this.event.puzzle = puzzle;
+			this.event.goalFound = goalFound;
+			this.event.nodesGenerated = getNodesGenerated();
+			this.event.nodesExpanded = nodesExpanded;
+			this.event.duplicatesSkipped = duplicatesSkipped;
+			this.event.peakFrontier = peakFrontier;
+			this.event.fills = movesByKind[MeasuringCupsPuzzleSpace.FILL];
+			this.event.empties = movesByKind[MeasuringCupsPuzzleSpace.EMPTY];
+			this.event.pours = movesByKind[MeasuringCupsPuzzleSpace.POUR];
+			this.event.allocatedBytes = allocatedBytes;
+			this.event.commit();
+		}
+	}
+
+	private static long allocatedBytesOfCurrentThread() {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (threads instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) threads).getCurrentThreadAllocatedBytes();
+		}
+		return 0;
+	}
+
+	/**
+	 * @return the algorithm of the search
+	 */
+	public String getAlgorithm() {
+		return algorithm;
+	}
+
+	/**
+	 * @return the description of the puzzle that was solved
+	 */
+	public String getPuzzle() {
+		return puzzle;
+	}
+
+	/**
+	 * @return true if the search reached the goal
+	 */
+	public boolean isGoalFound() {
+		return goalFound;
+	}
+
+	/**
+	 * @return the number of states generated by applying moves
+	 */
+	public long getNodesGenerated() {
+		return movesByKind[MeasuringCupsPuzzleSpace.FILL] + movesByKind[MeasuringCupsPuzzleSpace.EMPTY]
+				+ movesByKind[MeasuringCupsPuzzleSpace.POUR];
+	}
+
+	/**
+	 * @param moveKind
+	 *            {@link MeasuringCupsPuzzleSpace#FILL},
+	 *            {@link MeasuringCupsPuzzleSpace#EMPTY} or
+	 *            {@link MeasuringCupsPuzzleSpace#POUR}
+	 * @return the number of states generated by moves of that kind
+	 */
+	public long getMovesGenerated(int moveKind) {
+		return movesByKind[moveKind];
+	}
+
+	/**
+	 * @return the number of states whose successors (or, for the backward half
+	 *         of BIBFS, predecessors) were generated
+	 */
+	public long getNodesExpanded() {
+		return nodesExpanded;
+	}
+
+	/**
+	 * @return the number of generated states dropped as already visited
+	 */
+	public long getDuplicatesSkipped() {
+		return duplicatesSkipped;
+	}
+
+	/**
+	 * @return the largest number of states the frontier held at once
+	 */
+	public long getPeakFrontier() {
+		return peakFrontier;
+	}
+
+	/**
+	 * @return the wall time of the search in nanoseconds
+	 */
+	public long getWallNanos() {
+		return wallNanos;
+	}
+
+	/**
+	 * @return the bytes the calling thread allocated during the search
+	 */
+	public long getAllocatedBytes() {
+		return allocatedBytes;
+	}
+
+	/**
+	 * @return the statistics on one line
+	 */
+	@Override
+	public String toString() {
+		return algorithm + " " + puzzle + ": generated=" + getNodesGenerated() + " (fill="
+				+ movesByKind[MeasuringCupsPuzzleSpace.FILL] + " empty=" + movesByKind[MeasuringCupsPuzzleSpace.EMPTY]
+				+ " pour=" + movesByKind[MeasuringCupsPuzzleSpace.POUR] + ") expanded=" + nodesExpanded
+				+ " duplicates=" + duplicatesSkipped + " peakFrontier=" + peakFrontier + " wallNanos=" + wallNanos
+				+ " allocatedBytes=" + allocatedBytes;
+	}
+}
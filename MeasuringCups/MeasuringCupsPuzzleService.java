@@ -0,0 +1,184 @@
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An asynchronous front end to {@link MeasuringCupsPuzzle#solve} for servers.
+ * Solves run on a fixed number of worker threads behind a bounded queue, and
+ * each gets a new {@link MeasuringCupsPuzzle}, since a puzzle keeps the
+ * result of its last search and must not be shared between threads.
+ * <p>
+ * Concurrent identical requests, the same cups, start volumes, goal volumes
+ * and algorithm, are coalesced: while one search for a puzzle is queued or
+ * running, further requests for it wait for that search instead of starting
+ * their own, so a burst of the same query costs one solve. Every caller gets
+ * its own future, and cancelling it does not affect the others; the
+ * {@link MeasuringCupsPuzzleSolveOutcome} they complete with is shared and
+ * must not be modified.
+ * <p>
+ * Every solve runs under a {@link MeasuringCupsPuzzleSolveBudget} whose
+ * timeout starts when the request is accepted, so time spent in the queue
+ * counts against it. A request that finds the queue full fails with a
+ * RejectedExecutionException. The gauges {@link #getQueueDepth},
+ * {@link #getInFlight} and {@link #getRunning} and the counters
+ * {@link #getRequests} and {@link #getCoalesced} can be sampled at any time.
+ */
+public class MeasuringCupsPuzzleService implements AutoCloseable {
+
+	private final ThreadPoolExecutor executor;
+	private final long timeoutMillis;
+	private final MeasuringCupsPuzzleCancellationToken closed;
+	private final ConcurrentHashMap<String, CompletableFuture<MeasuringCupsPuzzleSolveOutcome>> inFlight;
+	private final AtomicLong requests;
+	private final AtomicLong coalesced;
+
+	/**
+	 * Construct a service and start its worker threads
+	 * 
+	 * @param threads
+	 *            the number of worker threads, at least one
+	 * @param queueCapacity
+	 *            the number of searches that may wait for a worker, at least
+	 *            one
+	 * @param timeoutMillis
+	 *            the milliseconds a request may take from being accepted to
+	 *            being solved, or {@link MeasuringCupsPuzzleSolveBudget#UNLIMITED}
+	 */
+	public MeasuringCupsPuzzleService(int threads, int queueCapacity, long timeoutMillis) {
+		AtomicInteger threadNumber = new AtomicInteger();
+		this.executor = new ThreadPoolExecutor(Math.max(1, threads), Math.max(1, threads), 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(Math.max(1, queueCapacity)), runnable -> {
+					Thread thread = new Thread(runnable, "measuring-cups-" + threadNumber.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				});
+		this.executor.prestartAllCoreThreads();
+		this.timeoutMillis = timeoutMillis;
+		this.closed = new MeasuringCupsPuzzleCancellationToken();
+		this.inFlight = new ConcurrentHashMap<String, CompletableFuture<MeasuringCupsPuzzleSolveOutcome>>();
+		this.requests = new AtomicLong();
+		this.coalesced = new AtomicLong();
+	}
+
+	/**
+	 * Solve a puzzle on a worker thread, or join a search for the same puzzle
+	 * that is already queued or running
+	 * 
+	 * @param startState
+	 *            a state describing the capacities and initial volumes of
+	 *            measuring cups {@link MeasuringCupsPuzzleState}
+	 * @param goalState
+	 *            a state describing the desired end volumes of measuring cups
+	 *            {@link MeasuringCupsPuzzleState}
+	 * @param algorithm
+	 *            the search algorithm, as for
+	 *            {@link MeasuringCupsPuzzle#findPathIfExists}
+	 * @return a future completed with the outcome of the search, or
+	 *         exceptionally if the queue is full, the service is closed or
+	 *         the search fails
+	 */
+	public CompletableFuture<MeasuringCupsPuzzleSolveOutcome> solve(MeasuringCupsPuzzleState startState,
+			MeasuringCupsPuzzleState goalState, String algorithm) {
+		requests.incrementAndGet();
+		String key = keyOf(startState, goalState, algorithm);
+		CompletableFuture<MeasuringCupsPuzzleSolveOutcome> created = new CompletableFuture<MeasuringCupsPuzzleSolveOutcome>();
+		CompletableFuture<MeasuringCupsPuzzleSolveOutcome> shared = inFlight.putIfAbsent(key, created);
+		if (shared != null) {
+			coalesced.incrementAndGet();
+			return shared.copy();
+		}
+		MeasuringCupsPuzzleSolveBudget budget = new MeasuringCupsPuzzleSolveBudget(
+				MeasuringCupsPuzzleSolveBudget.UNLIMITED, MeasuringCupsPuzzleSolveBudget.UNLIMITED, timeoutMillis,
+				closed);
+		try {
+			executor.execute(() -> run(key, created, startState, goalState, algorithm, budget));
+		} catch (RejectedExecutionException e) {
+			inFlight.remove(key, created);
+			created.completeExceptionally(e);
+		}
+		return created.copy();
+	}
+
+	private void run(String key, CompletableFuture<MeasuringCupsPuzzleSolveOutcome> future,
+			MeasuringCupsPuzzleState startState, MeasuringCupsPuzzleState goalState, String algorithm,
+			MeasuringCupsPuzzleSolveBudget budget) {
+		try {
+			MeasuringCupsPuzzleSolveOutcome outcome = new MeasuringCupsPuzzle(startState, goalState).solve(algorithm,
+					budget);
+			inFlight.remove(key, future);
+			future.complete(outcome);
+		} catch (Throwable e) {
+			// an Error such as running out of memory must still release the
+			// callers waiting on this search and its key
+			inFlight.remove(key, future);
+			future.completeExceptionally(e);
+		}
+	}
+
+	/**
+	 * @return the key under which identical requests are coalesced
+	 */
+	private static String keyOf(MeasuringCupsPuzzleState startState, MeasuringCupsPuzzleState goalState,
+			String algorithm) {
+		int cupCount = startState.getCupCount();
+		int[] volumes = new int[3 * cupCount];
+		for (int i = 0; i < cupCount; i++) {
+			volumes[i] = startState.getCup(i).getCapacity();
+			volumes[cupCount + i] = startState.getCup(i).getCurrentAmount();
+			volumes[2 * cupCount + i] = goalState.getCup(i).getCurrentAmount();
+		}
+		return algorithm + Arrays.toString(volumes);
+	}
+
+	/**
+	 * @return the number of searches waiting for a worker thread
+	 */
+	public int getQueueDepth() {
+		return executor.getQueue().size();
+	}
+
+	/**
+	 * @return the number of distinct searches queued or running
+	 */
+	public int getInFlight() {
+		return inFlight.size();
+	}
+
+	/**
+	 * @return the number of worker threads running a search
+	 */
+	public int getRunning() {
+		return executor.getActiveCount();
+	}
+
+	/**
+	 * @return the number of calls of {@link #solve}
+	 */
+	public long getRequests() {
+		return requests.get();
+	}
+
+	/**
+	 * @return the number of calls of {@link #solve} that joined a search
+	 *         already in flight
+	 */
+	public long getCoalesced() {
+		return coalesced.get();
+	}
+
+	/**
+	 * Stop accepting requests and cancel the searches in flight, which
+	 * complete with status BUDGET_EXCEEDED and limit CANCELLED
+	 */
+	@Override
+	public void close() {
+		executor.shutdown();
+		closed.cancel();
+	}
+}
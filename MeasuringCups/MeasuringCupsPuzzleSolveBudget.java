@@ -0,0 +1,114 @@
+/**
+ * The limits of one call of {@link MeasuringCupsPuzzle#solve}: a number of
+ * expanded states, a number of bytes allocated by the calling thread, a
+ * deadline and a {@link MeasuringCupsPuzzleCancellationToken}. The deadline
+ * is a timeout counted from the construction of the budget, so a budget made
+ * when a request arrives also covers the time the request waits for a
+ * thread.
+ * <p>
+ * The limits are checked as states are expanded: the number of states on
+ * every expansion, the others every few hundred expansions, and for
+ * PARALLEL_BFS all of them once per layer. Allocated bytes bound the memory
+ * the search can hold, since it cannot hold more than it allocated; the
+ * worker threads of PARALLEL_BFS and the files of EXTERNAL_BFS are not
+ * counted.
+ */
+public class MeasuringCupsPuzzleSolveBudget {
+
+	/**
+	 * The limit that stopped a search
+	 */
+	public enum Limit {
+		NODES, MEMORY, DEADLINE, CANCELLED, DEPTH
+	}
+
+	public static final long UNLIMITED = Long.MAX_VALUE;
+
+	private final long maxNodesExpanded;
+	private final long maxAllocatedBytes;
+	private final long deadlineNanos;
+	private final boolean hasDeadline;
+	private final MeasuringCupsPuzzleCancellationToken cancellationToken;
+
+	/**
+	 * Construct a budget without a cancellation token
+	 * 
+	 * @param maxNodesExpanded
+	 *            the number of states the search may expand, or
+	 *            {@link #UNLIMITED}
+	 * @param maxAllocatedBytes
+	 *            the bytes the search may allocate, or {@link #UNLIMITED}
+	 * @param timeoutMillis
+	 *            the milliseconds from now the search must end by, or
+	 *            {@link #UNLIMITED}
+	 */
+	public MeasuringCupsPuzzleSolveBudget(long maxNodesExpanded, long maxAllocatedBytes, long timeoutMillis) {
+		this(maxNodesExpanded, maxAllocatedBytes, timeoutMillis, null);
+	}
+
+	/**
+	 * Construct a budget
+	 * 
+	 * @param maxNodesExpanded
+	 *            the number of states the search may expand, or
+	 *            {@link #UNLIMITED}
+	 * @param maxAllocatedBytes
+	 *            the bytes the search may allocate, or {@link #UNLIMITED}
+	 * @param timeoutMillis
+	 *            the milliseconds from now the search must end by, or
+	 *            {@link #UNLIMITED}
+	 * @param cancellationToken
+	 *            a token that stops the search when cancelled, or null
+	 */
+	public MeasuringCupsPuzzleSolveBudget(long maxNodesExpanded, long maxAllocatedBytes, long timeoutMillis,
+			MeasuringCupsPuzzleCancellationToken cancellationToken) {
+		if (maxNodesExpanded < 0 || maxAllocatedBytes < 0 || timeoutMillis < 0) {
+			throw new IllegalArgumentException();
+		}
+		this.maxNodesExpanded = maxNodesExpanded;
+		this.maxAllocatedBytes = maxAllocatedBytes;
+		this.hasDeadline = timeoutMillis != UNLIMITED;
+		this.deadlineNanos = this.hasDeadline ? System.nanoTime() + timeoutMillis * 1_000_000L : 0;
+		this.cancellationToken = cancellationToken;
+	}
+
+	/**
+	 * @return the number of states the search may expand
+	 */
+	public long getMaxNodesExpanded() {
+		return maxNodesExpanded;
+	}
+
+	/**
+	 * @return the bytes the search may allocate
+	 */
+	public long getMaxAllocatedBytes() {
+		return maxAllocatedBytes;
+	}
+
+	/**
+	 * @return the token that stops the search, or null
+	 */
+	public MeasuringCupsPuzzleCancellationToken getCancellationToken() {
+		return cancellationToken;
+	}
+
+	/**
+	 * @param allocatedBytes
+	 *            the bytes the search has allocated so far
+	 * @return the limit, other than the number of expanded states, that has
+	 *         been passed, or null if none has
+	 */
+	Limit exceededLimit(long allocatedBytes) {
+		if (cancellationToken != null && cancellationToken.isCancelled()) {
+			return Limit.CANCELLED;
+		}
+		if (hasDeadline && System.nanoTime() - deadlineNanos >= 0) {
+			return Limit.DEADLINE;
+		}
+		if (allocatedBytes > maxAllocatedBytes) {
+			return Limit.MEMORY;
+		}
+		return null;
+	}
+}
@@ -0,0 +1,79 @@
+/**
+ * The result of {@link MeasuringCupsPuzzle#solve}: whether the puzzle was
+ * solved, shown to be unsolvable, or left open because a limit of the
+ * {@link MeasuringCupsPuzzleSolveBudget} was reached. Every outcome carries the
+ * {@link MeasuringCupsPuzzleSearchStatistics} of the work done, so a search
+ * that was stopped still reports how many states it expanded, how large its
+ * frontier grew and how long it ran.
+ */
+public class MeasuringCupsPuzzleSolveOutcome {
+
+	/**
+	 * How a search ended
+	 */
+	public enum Status {
+		SOLVED, UNSOLVABLE, BUDGET_EXCEEDED
+	}
+
+	private final Status status;
+	private final MeasuringCupsPuzzleSolveBudget.Limit limit;
+	private final MeasuringCupsPuzzleStateList path;
+	private final MeasuringCupsPuzzleSearchStatistics statistics;
+
+	/**
+	 * @param status
+	 *            how the search ended
+	 * @param limit
+	 *            the limit that stopped it if status is BUDGET_EXCEEDED, null
+	 *            otherwise
+	 * @param path
+	 *            the path found if status is SOLVED, null otherwise
+	 * @param statistics
+	 *            the work done by the search
+	 */
+	MeasuringCupsPuzzleSolveOutcome(Status status, MeasuringCupsPuzzleSolveBudget.Limit limit,
+			MeasuringCupsPuzzleStateList path, MeasuringCupsPuzzleSearchStatistics statistics) {
+		this.status = status;
+		this.limit = limit;
+		this.path = path;
+		this.statistics = statistics;
+	}
+
+	/**
+	 * @return how the search ended
+	 */
+	public Status getStatus() {
+		return status;
+	}
+
+	/**
+	 * @return the limit that stopped the search, or null if it was not
+	 *         stopped
+	 */
+	public MeasuringCupsPuzzleSolveBudget.Limit getLimit() {
+		return limit;
+	}
+
+	/**
+	 * @return the path from the start state to the goal state, or null if the
+	 *         puzzle was not solved
+	 */
+	public MeasuringCupsPuzzleStateList getPath() {
+		return path;
+	}
+
+	/**
+	 * @return the work done by the search up to the moment it ended
+	 */
+	public MeasuringCupsPuzzleSearchStatistics getStatistics() {
+		return statistics;
+	}
+
+	/**
+	 * @return the status, the limit if one was reached, and the statistics
+	 */
+	@Override
+	public String toString() {
+		return status + (limit != null ? " (" + limit + ")" : "") + " " + statistics;
+	}
+}
@@ -0,0 +1,575 @@
+import java.io.IOException;
+
+/**
+ * The state space of a puzzle with any number of measuring cups. A state
+ * vector (amount0, amount1, ..., amountN-1) is encoded in mixed radix as the
+ * single long sum(amount_i * place_i), where cup i has radix capacity_i + 1,
+ * the last cup is the least significant digit and cup 0 the most significant.
+ * For two cups this is amountA * (capacityB + 1) + amountB.
+ * <p>
+ * Moves are numbered from a table rather than written out one method per
+ * move: moves 0 to N-1 fill cup i, moves N to 2N-1 empty cup i and the
+ * remaining N * (N - 1) moves pour cup i into cup j for every i != j, ordered
+ * by i and then j. For two cups this is the order used by
+ * {@link MeasuringCupsPuzzle#getSuccessors}.
+ */
+public class MeasuringCupsPuzzleSpace {
+
+	public static final int FILL = 0;
+	public static final int EMPTY = 1;
+	public static final int POUR = 2;
+
+	/**
+	 * The move recorded for a state that no move generated, such as the start
+	 * state of a search
+	 */
+	public static final int NO_MOVE = -1;
+
+	private final int[] capacities;
+	private final long[] places;
+	private final long size;
+
+	private final int[] moveKinds;
+	private final int[] moveFrom;
+	private final int[] moveTo;
+
+	/**
+	 * Construct the state space of a set of cups
+	 * 
+	 * @param capacities
+	 *            the maximum volume of each cup
+	 * @throws IllegalArgumentException
+	 *             if there are no cups or a capacity is negative
+	 * @throws MeasuringCupsPuzzleException
+	 *             if the number of states does not fit in a long
+	 */
+	public MeasuringCupsPuzzleSpace(int... capacities) {
+		if (capacities.length == 0) {
+			throw new IllegalArgumentException();
+		}
+		int cupCount = capacities.length;
+		this.capacities = capacities.clone();
+		this.places = new long[cupCount];
+		long place = 1;
+		try {
+			for (int i = cupCount - 1; i >= 0; i--) {
+				if (capacities[i] < 0) {
+					throw new IllegalArgumentException();
+				}
+				this.places[i] = place;
+				place = Math.multiplyExact(place, (long) capacities[i] + 1);
+			}
+		} catch (ArithmeticException e) {
+			throw new MeasuringCupsPuzzleException(Config.STATE_SPACE_TOO_LARGE);
+		}
+		this.size = place;
+
+		int moveCount = 2 * cupCount + cupCount * (cupCount - 1);
+		this.moveKinds = new int[moveCount];
+		this.moveFrom = new int[moveCount];
+		this.moveTo = new int[moveCount];
+		int move = 0;
+		for (int i = 0; i < cupCount; i++, move++) {
+			moveKinds[move] = FILL;
+			moveFrom[move] = i;
+			moveTo[move] = i;
+		}
+		for (int i = 0; i < cupCount; i++, move++) {
+			moveKinds[move] = EMPTY;
+			moveFrom[move] = i;
+			moveTo[move] = i;
+		}
+		for (int i = 0; i < cupCount; i++) {
+			for (int j = 0; j < cupCount; j++) {
+				if (i != j) {
+					moveKinds[move] = POUR;
+					moveFrom[move] = i;
+					moveTo[move] = j;
+					move++;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Construct the state space of the cups in a state
+	 * 
+	 * @param state
+	 *            a state whose cup capacities describe the space
+	 */
+	public MeasuringCupsPuzzleSpace(MeasuringCupsPuzzleState state) {
+		this(capacitiesOf(state));
+	}
+
+	private static int[] capacitiesOf(MeasuringCupsPuzzleState state) {
+		int[] capacities = new int[state.getCupCount()];
+		for (int i = 0; i < capacities.length; i++) {
+			capacities[i] = state.getCup(i).getCapacity();
+		}
+		return capacities;
+	}
+
+	/**
+	 * @return the number of cups
+	 */
+	public int getCupCount() {
+		return capacities.length;
+	}
+
+	/**
+	 * @param cup
+	 *            the index of a cup
+	 * @return the capacity of that cup
+	 */
+	public int getCapacity(int cup) {
+		return capacities[cup];
+	}
+
+	/**
+	 * @return the number of states, the product of capacity_i + 1
+	 */
+	public long size() {
+		return size;
+	}
+
+	/**
+	 * Every move leaves at least one cup empty or full: a fill fills a cup, an
+	 * empty empties one, and a pour either empties its source or fills its
+	 * target. So apart from the start state, a search can only reach states
+	 * with such a cup
+	 * 
+	 * @return the number of states with at least one cup empty or full, the
+	 *         product of capacity_i + 1 minus the product of capacity_i - 1
+	 */
+	public long getBoundarySize() {
+		long interior = 1;
+		for (int capacity : capacities) {
+			interior *= Math.max(0, capacity - 1);
+		}
+		return size - interior;
+	}
+
+	/**
+	 * @param amounts
+	 *            the currentAmount of each cup
+	 * @return the packed key of the state
+	 */
+	public long encode(int[] amounts) {
+		long key = 0;
+		for (int i = 0; i < amounts.length; i++) {
+			key += amounts[i] * places[i];
+		}
+		return key;
+	}
+
+	/**
+	 * @param state
+	 *            a state of the cups of this space
+	 * @return the packed key of the state
+	 */
+	public long encode(MeasuringCupsPuzzleState state) {
+		long key = 0;
+		for (int i = 0; i < places.length; i++) {
+			key += state.getCup(i).getCurrentAmount() * places[i];
+		}
+		return key;
+	}
+
+	/**
+	 * @param key
+	 *            a packed state key
+	 * @param cup
+	 *            the index of a cup
+	 * @return the currentAmount of that cup in the state
+	 */
+	public int amount(long key, int cup) {
+		return (int) (key / places[cup] % ((long) capacities[cup] + 1));
+	}
+
+	/**
+	 * Write the amount of every cup of a state into a buffer
+	 * 
+	 * @param key
+	 *            a packed state key
+	 * @param amounts
+	 *            a buffer of at least {@link #getCupCount} elements
+	 */
+	public void decode(long key, int[] amounts) {
+		for (int i = capacities.length - 1; i >= 0; i--) {
+			long radix = (long) capacities[i] + 1;
+			amounts[i] = (int) (key % radix);
+			key /= radix;
+		}
+	}
+
+	/**
+	 * @return the number of moves, 2N + N * (N - 1)
+	 */
+	public int getMoveCount() {
+		return moveKinds.length;
+	}
+
+	/**
+	 * @param move
+	 *            a move number
+	 * @return {@link #FILL}, {@link #EMPTY} or {@link #POUR}
+	 */
+	public int getMoveKind(int move) {
+		return moveKinds[move];
+	}
+
+	/**
+	 * @param move
+	 *            a move number
+	 * @return the cup that is filled, emptied or poured from
+	 */
+	public int getMoveFrom(int move) {
+		return moveFrom[move];
+	}
+
+	/**
+	 * @param move
+	 *            a move number
+	 * @return the cup that is poured into (the cup itself for fill and empty)
+	 */
+	public int getMoveTo(int move) {
+		return moveTo[move];
+	}
+
+	/**
+	 * @param cup
+	 *            the index of a cup
+	 * @return the number of the move filling the cup
+	 */
+	public int fillMove(int cup) {
+		return cup;
+	}
+
+	/**
+	 * @param cup
+	 *            the index of a cup
+	 * @return the number of the move emptying the cup
+	 */
+	public int emptyMove(int cup) {
+		return capacities.length + cup;
+	}
+
+	/**
+	 * @param from
+	 *            the index of the cup poured from
+	 * @param to
+	 *            the index of the cup poured into, different from from
+	 * @return the number of the move pouring cup from into cup to
+	 */
+	public int pourMove(int from, int to) {
+		int cupCount = capacities.length;
+		return 2 * cupCount + from * (cupCount - 1) + (to < from ? to : to - 1);
+	}
+
+	/**
+	 * @param key
+	 *            a packed state key
+	 * @param move
+	 *            a move number
+	 * @return the packed key of the state reached by applying move to the
+	 *         state; equal to key if the move does not change anything
+	 */
+	public long apply(long key, int move) {
+		int from = moveFrom[move];
+		int amountFrom = amount(key, from);
+		switch (moveKinds[move]) {
+		case FILL:
+			return key + (capacities[from] - amountFrom) * places[from];
+		case EMPTY:
+			return key - amountFrom * places[from];
+		default:
+			int to = moveTo[move];
+			int transferAmount = Math.min(amountFrom, capacities[to] - amount(key, to));
+			return key - transferAmount * places[from] + transferAmount * places[to];
+		}
+	}
+
+	/**
+	 * Write the successors of a state in move table order. Moves that leave
+	 * the state unchanged are skipped.
+	 * 
+	 * @param key
+	 *            the packed key of the state to expand
+	 * @param amounts
+	 *            a scratch buffer of at least {@link #getCupCount} elements
+	 * @param successorKeys
+	 *            a buffer of at least {@link #getMoveCount} elements receiving
+	 *            the packed successor keys
+	 * @param successorMoves
+	 *            a buffer of at least {@link #getMoveCount} elements receiving
+	 *            the move that leads to each successor
+	 * @return the number of successors written
+	 */
+	public int successors(long key, int[] amounts, long[] successorKeys, int[] successorMoves) {
+		decode(key, amounts);
+		int count = 0;
+		for (int move = 0; move < moveKinds.length; move++) {
+			int from = moveFrom[move];
+			long successorKey;
+			switch (moveKinds[move]) {
+			case FILL:
+				successorKey = key + (capacities[from] - amounts[from]) * places[from];
+				break;
+			case EMPTY:
+				successorKey = key - amounts[from] * places[from];
+				break;
+			default:
+				int to = moveTo[move];
+				int transferAmount = Math.min(amounts[from], capacities[to] - amounts[to]);
+				successorKey = key - transferAmount * places[from] + transferAmount * places[to];
+			}
+			if (successorKey != key) {
+				successorKeys[count] = successorKey;
+				successorMoves[count] = move;
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * @return the largest number of predecessors a state can have, (N + 1)
+	 *         times the sum of the capacities; the size a buffer passed to
+	 *         {@link #predecessors} needs
+	 * @throws MeasuringCupsPuzzleException
+	 *             if the bound does not fit in an array
+	 */
+	public int getPredecessorBound() {
+		long capacitySum = 0;
+		for (int capacity : capacities) {
+			capacitySum += capacity;
+		}
+		long bound = (capacities.length + 1) * capacitySum;
+		if (bound > Integer.MAX_VALUE - 8) {
+			throw new MeasuringCupsPuzzleException(Config.STATE_SPACE_TOO_LARGE);
+		}
+		return (int) bound;
+	}
+
+	/**
+	 * Write every state from which a single move leads to a given state, in
+	 * move table order. Pours are not reversible (a full or empty cup forgets
+	 * how much it held), so one move can have many predecessors:
+	 * <ul>
+	 * <li>fill i: cup i is full; it held anything from 0 to capacity_i - 1</li>
+	 * <li>empty i: cup i is empty; it held anything from 1 to capacity_i</li>
+	 * <li>pour i to j: if cup j is full, any amount t that fits back into cup
+	 * i was poured; otherwise cup i is empty and all of it, up to the amount
+	 * now in cup j, was poured</li>
+	 * </ul>
+	 * 
+	 * @param key
+	 *            the packed key of the state
+	 * @param amounts
+	 *            a scratch buffer of at least {@link #getCupCount} elements
+	 * @param predecessorKeys
+	 *            a buffer of at least {@link #getPredecessorBound} elements
+	 *            receiving the packed predecessor keys
+	 * @param predecessorMoves
+	 *            a buffer of at least {@link #getPredecessorBound} elements
+	 *            receiving the move that leads from each predecessor to key
+	 * @return the number of predecessors written
+	 */
+	public int predecessors(long key, int[] amounts, long[] predecessorKeys, int[] predecessorMoves) {
+		decode(key, amounts);
+		int count = 0;
+		for (int move = 0; move < moveKinds.length; move++) {
+			int from = moveFrom[move];
+			switch (moveKinds[move]) {
+			case FILL:
+				if (amounts[from] == capacities[from]) {
+					for (int amount = 0; amount < capacities[from]; amount++) {
+						predecessorKeys[count] = key - (capacities[from] - amount) * places[from];
+						predecessorMoves[count++] = move;
+					}
+				}
+				break;
+			case EMPTY:
+				if (amounts[from] == 0) {
+					for (int amount = 1; amount <= capacities[from]; amount++) {
+						predecessorKeys[count] = key + amount * places[from];
+						predecessorMoves[count++] = move;
+					}
+				}
+				break;
+			default:
+				int to = moveTo[move];
+				int maxTransfer;
+				if (amounts[to] == capacities[to]) {
+					maxTransfer = Math.min(capacities[to], capacities[from] - amounts[from]);
+				} else if (amounts[from] == 0) {
+					maxTransfer = Math.min(amounts[to], capacities[from]);
+				} else {
+					maxTransfer = 0;
+				}
+				for (int transferAmount = 1; transferAmount <= maxTransfer; transferAmount++) {
+					predecessorKeys[count] = key + transferAmount * places[from] - transferAmount * places[to];
+					predecessorMoves[count++] = move;
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * @param fromKey
+	 *            a packed state key
+	 * @param toKey
+	 *            a packed state key
+	 * @return the move that turns fromKey into toKey, or {@link #NO_MOVE} if
+	 *         there is none. Different moves never generate the same state
+	 *         from one state, so the move is unique
+	 */
+	public int moveBetween(long fromKey, long toKey) {
+		if (fromKey != toKey) {
+			for (int move = 0; move < moveKinds.length; move++) {
+				if (apply(fromKey, move) == toKey) {
+					return move;
+				}
+			}
+		}
+		return NO_MOVE;
+	}
+
+	/**
+	 * Build the {@link MeasuringCupsPuzzleState} for a packed key, recording
+	 * the move from parentState that generated it
+	 * 
+	 * @param key
+	 *            a packed state key
+	 * @param parentState
+	 *            the state preceding it on a path, or null
+	 * @return a new state holding the volumes encoded in key
+	 */
+	public MeasuringCupsPuzzleState toState(long key, MeasuringCupsPuzzleState parentState) {
+		return toState(key, parentState, parentState == null ? NO_MOVE : moveBetween(encode(parentState), key));
+	}
+
+	/**
+	 * Build the {@link MeasuringCupsPuzzleState} for a packed key
+	 * 
+	 * @param key
+	 *            a packed state key
+	 * @param parentState
+	 *            the state preceding it on a path, or null
+	 * @param move
+	 *            the move that generated key from parentState, or
+	 *            {@link #NO_MOVE}
+	 * @return a new state holding the volumes encoded in key
+	 */
+	public MeasuringCupsPuzzleState toState(long key, MeasuringCupsPuzzleState parentState, int move) {
+		Cup[] cups = new Cup[capacities.length];
+		for (int i = 0; i < cups.length; i++) {
+			cups[i] = new Cup(capacities[i], amount(key, i));
+		}
+		return new MeasuringCupsPuzzleState(cups, parentState, move);
+	}
+
+	/**
+	 * Write a state as a tuple of volumes, (amountA, amountB, ...), without
+	 * building it
+	 * 
+	 * @param key
+	 *            a packed state key
+	 * @param out
+	 *            where the tuple is written
+	 * @throws IOException
+	 *             if out cannot be written
+	 */
+	public void writeState(long key, Appendable out) throws IOException {
+		out.append('(');
+		for (int i = 0; i < capacities.length; i++) {
+			if (i > 0) {
+				out.append(", ");
+			}
+			out.append(Integer.toString(amount(key, i)));
+		}
+		out.append(')');
+	}
+
+	/**
+	 * @param move
+	 *            a move number
+	 * @return the operation label of the move, e.g. "Fill CupA" or
+	 *         "CupB to CupC"
+	 */
+	public String getMoveName(int move) {
+		switch (moveKinds[move]) {
+		case FILL:
+			return fillName(moveFrom[move]);
+		case EMPTY:
+			return emptyName(moveFrom[move]);
+		default:
+			return pourName(moveFrom[move], moveTo[move]);
+		}
+	}
+
+	/**
+	 * Name a move without a space: the move numbers depend only on the number
+	 * of cups
+	 * 
+	 * @param cupCount
+	 *            the number of cups
+	 * @param move
+	 *            a move number of a space with cupCount cups
+	 * @return the operation label of the move, see {@link #getMoveName}
+	 */
+	public static String moveName(int cupCount, int move) {
+		if (move < cupCount) {
+			return fillName(move);
+		} else if (move < 2 * cupCount) {
+			return emptyName(move - cupCount);
+		}
+		int pour = move - 2 * cupCount;
+		int from = pour / (cupCount - 1);
+		int to = pour % (cupCount - 1);
+		return pourName(from, to < from ? to : to + 1);
+	}
+
+	/**
+	 * @param cup
+	 *            the index of a cup
+	 * @return the label of the cup: CupA, CupB, ... and Cup27, Cup28, ...
+	 *         after the alphabet runs out
+	 */
+	public static String cupName(int cup) {
+		if (cup < 26) {
+			return Config.CUP + (char) ('A' + cup);
+		}
+		return Config.CUP + (cup + 1);
+	}
+
+	/**
+	 * @param cup
+	 *            the index of a cup
+	 * @return the operation label for filling the cup
+	 */
+	public static String fillName(int cup) {
+		return Config.FILL + cupName(cup);
+	}
+
+	/**
+	 * @param cup
+	 *            the index of a cup
+	 * @return the operation label for emptying the cup
+	 */
+	public static String emptyName(int cup) {
+		return Config.EMPTY + cupName(cup);
+	}
+
+	/**
+	 * @param from
+	 *            the index of the cup poured from
+	 * @param to
+	 *            the index of the cup poured into
+	 * @return the operation label for pouring cup from into cup to
+	 */
+	public static String pourName(int from, int to) {
+		return cupName(from) + Config.POUR + cupName(to);
+	}
+}
@@ -1,18 +1,22 @@
-import java.util.Iterator;
-import java.util.Stack;
+import java.util.Arrays;
+import java.util.EmptyStackException;
 
 /**
- * A stack of MeasuringCupsPuzzleState nodes
+ * A stack of MeasuringCupsPuzzleState nodes, kept in a growable array
  */
 public class MeasuringCupsPuzzleStack implements MeasuringCupsPuzzleADT {
 
-	private Stack<MeasuringCupsPuzzleState> stack;
+	private static final int INITIAL_CAPACITY = 1 << 4;
+
+	private MeasuringCupsPuzzleState[] stack;
+	private int size;
 
 	/**
 	 * Construct a new stack
 	 */
 	public MeasuringCupsPuzzleStack() {
-		this.stack = new Stack<MeasuringCupsPuzzleState>();
+		this.stack = new MeasuringCupsPuzzleState[INITIAL_CAPACITY];
+		this.size = 0;
 	}
 
 	/**
@@ -21,16 +25,26 @@ public class MeasuringCupsPuzzleStack implements MeasuringCupsPuzzleADT {
 	 */
 	@Override
 	public void add(MeasuringCupsPuzzleState state) {
-		this.stack.push(state);
+		if (this.size == this.stack.length) {
+			this.stack = Arrays.copyOf(this.stack, this.size << 1);
+		}
+		this.stack[this.size++] = state;
 	}
 
 	/**
 	 * @return the node that was inserted into the stack most recently, which
 	 *         has been removed from the stack as a result of this function call
+	 * @throws EmptyStackException
+	 *             if the stack is empty
 	 */
 	@Override
 	public MeasuringCupsPuzzleState remove() {
-		return this.stack.pop();
+		if (this.size == 0) {
+			throw new EmptyStackException();
+		}
+		MeasuringCupsPuzzleState state = this.stack[--this.size];
+		this.stack[this.size] = null;
+		return state;
 	}
 
 	/**
@@ -38,7 +52,15 @@ public class MeasuringCupsPuzzleStack implements MeasuringCupsPuzzleADT {
 	 */
 	@Override
 	public boolean isEmpty() {
-		return this.stack.isEmpty();
+		return this.size == 0;
+	}
+
+	/**
+	 * @return the number of nodes in the stack
+	 */
+	@Override
+	public int size() {
+		return this.size;
 	}
 
 	/**
@@ -46,24 +68,24 @@ public class MeasuringCupsPuzzleStack implements MeasuringCupsPuzzleADT {
 	 */
 	@Override
 	public void clear() {
-		this.stack.clear();
+		Arrays.fill(this.stack, 0, this.size, null);
+		this.size = 0;
 	}
 
 	/**
 	 * @return a string representing the stack by calling each node/member's
-	 *         toString (in LIFO order) and joining the resulting strings with a
-	 *         space character as a delimiter
+	 *         toString (from the bottom of the stack to its top) and joining
+	 *         the resulting strings with a space character as a delimiter
 	 */
 	public String toString() {
-		Iterator<MeasuringCupsPuzzleState> stackIterator = this.stack.iterator();
-		String result = "";
-		while (stackIterator.hasNext()) {
-			result += stackIterator.next().toString();
-			if (stackIterator.hasNext()) {
-				result += " ";
+		StringBuilder result = new StringBuilder();
+		for (int i = 0; i < this.size; i++) {
+			if (i > 0) {
+				result.append(' ');
 			}
+			result.append(this.stack[i]);
 		}
-		return result;
+		return result.toString();
 	}
 
 }
@@ -1,11 +1,15 @@
+import java.util.Arrays;
+
 /**
- * A class representing a state of volumes of cupA and cupB.
+ * A class representing a state of volumes of cupA, cupB and any further cups.
  */
 public class MeasuringCupsPuzzleState {
 
-	private Cup cupA;
-	private Cup cupB;
+	private Cup[] cups;
 	private MeasuringCupsPuzzleState parentState;
+	private int depth;
+	private int move;
+	private long cost;
 
 	/**
 	 * Construct an object representing the state of two measuring cups and
@@ -19,23 +23,89 @@ public class MeasuringCupsPuzzleState {
 	 *            an object from this class representing the previous state
 	 */
 	public MeasuringCupsPuzzleState(Cup CupA, Cup CupB, MeasuringCupsPuzzleState parentState) {
-		this.cupA = CupA;
-		this.cupB = CupB;
+		this(new Cup[] { CupA, CupB }, parentState);
+	}
+
+	/**
+	 * Construct an object representing the state of any number of measuring
+	 * cups and their previous state
+	 * 
+	 * @param cups
+	 *            objects containing the currentAmount in each cup {@link Cup};
+	 *            cups[0] is cupA and cups[1] is cupB
+	 * @param parentState
+	 *            an object from this class representing the previous state
+	 */
+	public MeasuringCupsPuzzleState(Cup[] cups, MeasuringCupsPuzzleState parentState) {
+		this(cups, parentState, MeasuringCupsPuzzleSpace.NO_MOVE);
+	}
+
+	/**
+	 * Construct an object representing the state of any number of measuring
+	 * cups, their previous state and the move that led from one to the other
+	 * 
+	 * @param cups
+	 *            objects containing the currentAmount in each cup {@link Cup};
+	 *            cups[0] is cupA and cups[1] is cupB
+	 * @param parentState
+	 *            an object from this class representing the previous state
+	 * @param move
+	 *            the move number of {@link MeasuringCupsPuzzleSpace} that
+	 *            generated this state from parentState, or
+	 *            {@link MeasuringCupsPuzzleSpace#NO_MOVE} if it is not known
+	 */
+	public MeasuringCupsPuzzleState(Cup[] cups, MeasuringCupsPuzzleState parentState, int move) {
+		this.cups = cups;
 		this.parentState = parentState;
+		this.depth = parentState == null ? 0 : parentState.depth + 1;
+		this.move = move;
+		this.cost = parentState == null ? 0 : parentState.cost + volumeMovedFrom(parentState);
+	}
+
+	/**
+	 * @return the liters that flow into cups on the way from parentState to
+	 *         this state: what a fill adds, what a pour transfers and nothing
+	 *         for an empty
+	 */
+	private long volumeMovedFrom(MeasuringCupsPuzzleState parentState) {
+		long volume = 0;
+		for (int i = 0; i < this.cups.length && i < parentState.cups.length; i++) {
+			int increase = this.cups[i].getCurrentAmount() - parentState.cups[i].getCurrentAmount();
+			if (increase > 0) {
+				volume += increase;
+			}
+		}
+		return volume;
 	}
 
 	/**
 	 * @return cupA
 	 */
 	public Cup getCupA() {
-		return cupA;
+		return cups[0];
 	}
 
 	/**
 	 * @return cupB
 	 */
 	public Cup getCupB() {
-		return cupB;
+		return cups[1];
+	}
+
+	/**
+	 * @param index
+	 *            the index of a cup; 0 is cupA and 1 is cupB
+	 * @return the cup at index
+	 */
+	public Cup getCup(int index) {
+		return cups[index];
+	}
+
+	/**
+	 * @return the number of cups in this state
+	 */
+	public int getCupCount() {
+		return cups.length;
 	}
 
 	/**
@@ -46,25 +116,71 @@ public class MeasuringCupsPuzzleState {
 	}
 
 	/**
-	 * Compare this state against another state
+	 * @return the move number of {@link MeasuringCupsPuzzleSpace} that
+	 *         generated this state from its parentState, or
+	 *         {@link MeasuringCupsPuzzleSpace#NO_MOVE}
+	 */
+	public int getMove() {
+		return move;
+	}
+
+	/**
+	 * @return the number of moves between the first state of the chain of
+	 *         parentStates and this state
+	 */
+	public int getDepth() {
+		return depth;
+	}
+
+	/**
+	 * @return the liters of water filled into or poured between cups along the
+	 *         chain of parentStates up to this state; emptying a cup is free
+	 */
+	public long getCost() {
+		return cost;
+	}
+
+	/**
+	 * Compare this state against another object. The parentState is not part
+	 * of the comparison, so two states reached along different paths are equal
 	 * 
-	 * @param measuringCupsPuzzleState
-	 *            another object of the same class to compare this object to
-	 * @return true if this state's cupA and cupB are the same as the other
-	 *         state's cupA and cupB and false otherwise
+	 * @param obj
+	 *            another object to compare this object to
+	 * @return true if obj is a state whose cups are the same as this state's
+	 *         cups and false otherwise
 	 */
-	public boolean equals(MeasuringCupsPuzzleState measuringCupsPuzzleState) {
-		if (this.cupA.equals(measuringCupsPuzzleState.cupA) && this.cupB.equals(measuringCupsPuzzleState.cupB)) {
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
 			return true;
 		}
-		return false;
+		if (!(obj instanceof MeasuringCupsPuzzleState)) {
+			return false;
+		}
+		MeasuringCupsPuzzleState measuringCupsPuzzleState = (MeasuringCupsPuzzleState) obj;
+		return Arrays.equals(this.cups, measuringCupsPuzzleState.cups);
 	}
 
 	/**
-	 * @return a string containing cupA and cupB string representations as a
-	 *         pair: (cupA, cupB)
+	 * @return a hash code consistent with {@link #equals(Object)}
+	 */
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(this.cups);
+	}
+
+	/**
+	 * @return a string containing the cup string representations as a tuple:
+	 *         (cupA, cupB, ...)
 	 */
 	public String toString() {
-		return "(" + this.cupA.toString() + ", " + this.cupB.toString() + ")";
+		StringBuilder result = new StringBuilder("(");
+		for (int i = 0; i < this.cups.length; i++) {
+			if (i > 0) {
+				result.append(", ");
+			}
+			result.append(this.cups[i].toString());
+		}
+		return result.append(")").toString();
 	}
 }
@@ -1,3 +1,4 @@
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -153,52 +154,76 @@ public class MeasuringCupsPuzzleStateList implements
 	 *         Each member appears in a new line
 	 */
 	public String toString() {
+		StringBuilder result = new StringBuilder();
+		try {
+			writeTo(result);
+		} catch (IOException e) {
+			// a StringBuilder does not throw
+			throw new IllegalStateException(e);
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Write the list in the format of {@link #toString} in one pass, without
+	 * building the whole text first
+	 * 
+	 * @param out
+	 *            where the list is written
+	 * @throws IOException
+	 *             if out cannot be written
+	 */
+	public void writeTo(Appendable out) throws IOException {
 		Iterator<MeasuringCupsPuzzleState> CupPuzzleStateListIterator = this.cupPuzzleStateList
 				.iterator();
-		String result = "";
 		while (CupPuzzleStateListIterator.hasNext()) {
 			MeasuringCupsPuzzleState currentState = CupPuzzleStateListIterator.next();
-			result += getOperation(currentState) + "\t" +currentState.toString();
+			out.append(getOperation(currentState)).append('\t').append(currentState.toString());
 			if (CupPuzzleStateListIterator.hasNext()) {
-				result += "\n";
+				out.append('\n');
 			}
 		}
-		return result;
 	}
 
 	/**
 	 * @param cupPuzzleState  
-	 * @return a string indicating which operation resulted in cupPuzzleState from its parent state 
+	 * @return a string indicating which operation resulted in cupPuzzleState
+	 *         from its parent state: the name of its recorded move
+	 *         {@link MeasuringCupsPuzzleState#getMove} or, for states built
+	 *         without one, the move derived by comparing the cups with the
+	 *         parent's
 	 */
 	public String getOperation(MeasuringCupsPuzzleState cupPuzzleState) {
 		MeasuringCupsPuzzleState parentState = cupPuzzleState.getParentState();
 
 		if (parentState == null) {
 			return Config.START;
-		} else if (!cupPuzzleState.getCupA().equals(parentState.getCupA())
-				&& !cupPuzzleState.getCupB().equals(parentState.getCupB())) {
-			if (cupPuzzleState.getCupA().getCurrentAmount() > parentState
-					.getCupA().getCurrentAmount()) {
-				return Config.B_To_A;
-			} else {
-				return Config.A_To_B;
+		}
+		if (cupPuzzleState.getMove() != MeasuringCupsPuzzleSpace.NO_MOVE) {
+			return MeasuringCupsPuzzleSpace.moveName(cupPuzzleState.getCupCount(), cupPuzzleState.getMove());
+		}
+		int increased = -1;
+		int decreased = -1;
+		for (int i = 0; i < cupPuzzleState.getCupCount(); i++) {
+			int amount = cupPuzzleState.getCup(i).getCurrentAmount();
+			int parentAmount = parentState.getCup(i).getCurrentAmount();
+			if (amount == parentAmount) {
+				continue;
 			}
-		} else if (cupPuzzleState.getCupA().equals(parentState.getCupA())
-				&& !cupPuzzleState.getCupB().equals(parentState.getCupB())) {
-			if (cupPuzzleState.getCupB().getCurrentAmount() > parentState
-					.getCupB().getCurrentAmount()) {
-				return Config.FILL_B;
+			if (amount > parentAmount && increased < 0) {
+				increased = i;
+			} else if (amount < parentAmount && decreased < 0) {
+				decreased = i;
 			} else {
-				return Config.EMPTY_B;
-			}			
-		} else if (!cupPuzzleState.getCupA().equals(parentState.getCupA())
-				&& cupPuzzleState.getCupB().equals(parentState.getCupB())) {
-			if (cupPuzzleState.getCupA().getCurrentAmount() > parentState
-					.getCupA().getCurrentAmount()) {
-				return Config.FILL_A;
-			} else {
-				return Config.EMPTY_A;
+				return Config.INVALID_OPERATION;
 			}
+		}
+		if (increased >= 0 && decreased >= 0) {
+			return MeasuringCupsPuzzleSpace.pourName(decreased, increased);
+		} else if (increased >= 0) {
+			return MeasuringCupsPuzzleSpace.fillName(increased);
+		} else if (decreased >= 0) {
+			return MeasuringCupsPuzzleSpace.emptyName(decreased);
 		} else {
 			return Config.INVALID_OPERATION;
 		}
@@ -0,0 +1,104 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The cups of a puzzle that can trade places without changing anything: cups
+ * with the same capacity and the same goal volume. Relabeling such cups maps
+ * every path to a path of the same length and cost, and the goal state to
+ * itself, so a search only needs to visit one state of each set of states
+ * that differ by such a relabeling. The canonical state of a set has the
+ * volumes of each class of interchangeable cups in decreasing order; with k
+ * cups of one class this divides the state space by up to k!.
+ * <p>
+ * Searches use the canonical key only to decide whether a state has been
+ * visited. The states they expand, and the parent links they keep, are the
+ * concrete states they generated, so a path read back from the parent links
+ * is a valid sequence of moves on the original cups, ending in the goal state
+ * itself: the only state whose canonical key equals the goal's is the goal,
+ * since the interchangeable cups all hold the same volume in it.
+ */
+public class MeasuringCupsPuzzleSymmetry {
+
+	private final MeasuringCupsPuzzleSpace space;
+	private final int[][] classes;
+	private final int[] amounts;
+
+	private MeasuringCupsPuzzleSymmetry(MeasuringCupsPuzzleSpace space, int[][] classes) {
+		this.space = space;
+		this.classes = classes;
+		this.amounts = new int[space.getCupCount()];
+	}
+
+	/**
+	 * Find the interchangeable cups of a puzzle
+	 * 
+	 * @param space
+	 *            the cups of the puzzle {@link MeasuringCupsPuzzleSpace}
+	 * @param goalKey
+	 *            the packed key of the goal state
+	 * @return the symmetry of the puzzle, or null if no two cups are
+	 *         interchangeable
+	 */
+	public static MeasuringCupsPuzzleSymmetry of(MeasuringCupsPuzzleSpace space, long goalKey) {
+		int cupCount = space.getCupCount();
+		int[] goalAmounts = new int[cupCount];
+		space.decode(goalKey, goalAmounts);
+		boolean[] assigned = new boolean[cupCount];
+		List<int[]> classes = new ArrayList<int[]>();
+		for (int i = 0; i < cupCount; i++) {
+			if (assigned[i]) {
+				continue;
+			}
+			int[] members = new int[cupCount];
+			int size = 0;
+			for (int j = i; j < cupCount; j++) {
+				if (space.getCapacity(j) == space.getCapacity(i) && goalAmounts[j] == goalAmounts[i]) {
+					members[size++] = j;
+					assigned[j] = true;
+				}
+			}
+			if (size > 1) {
+				classes.add(Arrays.copyOf(members, size));
+			}
+		}
+		if (classes.isEmpty()) {
+			return null;
+		}
+		return new MeasuringCupsPuzzleSymmetry(space, classes.toArray(new int[classes.size()][]));
+	}
+
+	/**
+	 * @return the number of classes of two or more interchangeable cups
+	 */
+	public int getClassCount() {
+		return classes.length;
+	}
+
+	/**
+	 * @param key
+	 *            a packed state key
+	 * @return the packed key of the canonical state of key, with the volumes
+	 *         of each class of interchangeable cups in decreasing order
+	 */
+	public long canonicalKey(long key) {
+		space.decode(key, amounts);
+		boolean changed = false;
+		for (int[] members : classes) {
+			// insertion sort: the classes hold a handful of cups
+			for (int i = 1; i < members.length; i++) {
+				int amount = amounts[members[i]];
+				int j = i - 1;
+				while (j >= 0 && amounts[members[j]] < amount) {
+					amounts[members[j + 1]] = amounts[members[j]];
+					j--;
+				}
+				if (j + 1 != i) {
+					amounts[members[j + 1]] = amount;
+					changed = true;
+				}
+			}
+		}
+		return changed ? space.encode(amounts) : key;
+	}
+}
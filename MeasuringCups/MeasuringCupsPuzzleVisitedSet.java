@@ -0,0 +1,17 @@
+/**
+ * Define the interface of the closed set used by {@link MeasuringCupsPuzzle}
+ * to remember which {@link MeasuringCupsPuzzleState} graph nodes have already
+ * been visited. Shared by {@link MeasuringCupsPuzzleHashedVisitedSet} and
+ * {@link MeasuringCupsPuzzleBitSetVisitedSet}
+ */
+public interface MeasuringCupsPuzzleVisitedSet {
+	boolean add(MeasuringCupsPuzzleState state);
+
+	boolean contains(MeasuringCupsPuzzleState state);
+
+	int size();
+
+	void clear();
+
+	long bytesUsed();
+}
@@ -1,3 +1,16 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * The main class. Has a main method which solves the Measuring Cups problem
  * described in MeasuringCupsProblem.docx.
@@ -5,8 +18,10 @@
 public class MeasuringCupsSolver {
 	/**
 	 * Command line interface: MeasuringCupsSolver
-	 * <cupACapacity> <cupBCapacity> <targetVolume> where cupACapacity,
-	 * cupBCapacity, and targetVolume are all positive integers.
+	 * <cupACapacity> <cupBCapacity> [<cupCCapacity> ...] <targetVolume> where
+	 * the capacities and targetVolume are all positive integers. The last
+	 * argument is the targetVolume, every argument before it is the capacity of
+	 * one cup.
 	 * <p>
 	 * Prints a list of node states representing a path through measuring cup
 	 * states in the form (<volumeA0>, <volumeB0>) (<volumeA1>, <volumeB1>) ...
@@ -36,38 +51,316 @@ public class MeasuringCupsSolver {
 	 * 
 	 * DFS
 	 * Unsolvable
+	 * <p>
+	 * gcd(88, 42) = 2 does not divide 13, so both searches return at once
+	 * without exploring any state.
+	 * <p>
+	 * Example 3: MeasuringCupsSolver 8 5 3 4
+	 * prints paths through states (<volumeA>, <volumeB>, <volumeC>) ending in
+	 * (4, 0, 0). With more than two cups the packed engine
+	 * {@link MeasuringCupsPuzzlePackedEngine} is used, which finds the same
+	 * paths without allocating a state per visited node.
+	 * <p>
+	 * Example 4: MeasuringCupsSolver 1000000000000 999999999989 7
+	 * capacities beyond the int range cannot be searched; for two cups the
+	 * solution of {@link MeasuringCupsPuzzleBezout} is streamed instead, under
+	 * the heading BEZOUT.
+	 * <p>
+	 * Option --parallelism=<threads>: instead of BFS and DFS, prints the path
+	 * found by PARALLEL_BFS ({@link MeasuringCupsPuzzleParallelEngine}) on that
+	 * many threads, followed by its wall time, the wall time of the sequential
+	 * BFS on a {@link MeasuringCupsPuzzleQueue} and the speedup.
+	 * <p>
+	 * Option --batch [<file>]: reads one puzzle per line, in the form of the
+	 * arguments above, from the file or from standard input, and prints the
+	 * BFS path of each as it is solved by {@link MeasuringCupsPuzzleBatch},
+	 * headed by its line number. --threads=<threads> sets the number of
+	 * workers (default: the number of available processors) and --ordered
+	 * prints the results in input order. The number of puzzles, puzzles per
+	 * second and the p50 and p99 solve times are printed to standard error.
+	 * <p>
+	 * Option --index=<file>, which may be repeated: maps a distance index
+	 * written by {@link MeasuringCupsIndexBuilder}. When an index covers the
+	 * capacities of the puzzle, the BFS path is read from it instead of
+	 * searched for; the path is the same.
+	 * <p>
+	 * Option --portfolio[=<algorithm>,<algorithm>...]: instead of BFS and DFS
+	 * one after the other, runs the algorithms (default: BFS, DFS, PACKED_BFS,
+	 * PACKED_DFS, BIBFS, ASTAR and UCS) at the same time with
+	 * {@link MeasuringCupsPuzzlePortfolio}, prints the first answer under the
+	 * name of the algorithm that found it and cancels the other searches.
+	 * With --all every search runs to the end and each answer is printed as
+	 * it arrives. Either way a line per algorithm follows with its wall time
+	 * in milliseconds and how it ended. --symmetry applies to every search of
+	 * the portfolio; --index cannot be combined with it.
+	 * <p>
+	 * Option --symmetry: BFS and DFS visit one state per relabeling of cups
+	 * with the same capacity and goal volume
+	 * ({@link MeasuringCupsPuzzle#setSymmetryReduction}). The paths are still
+	 * moves on the original cups; the BFS path is as short, but may differ.
 	 */
-	public static void main(String[] args) {
-		int capacityCupA = Integer.parseInt(args[0]);
-		int capacityCupB = Integer.parseInt(args[1]);
-		int goalAmount = Integer.parseInt(args[2]);
+	public static void main(String[] args) throws IOException, InterruptedException {
+		int parallelism = 0;
+		int threads = Runtime.getRuntime().availableProcessors();
+		boolean batch = false;
+		boolean ordered = false;
+		String portfolio = null;
+		boolean all = false;
+		boolean symmetry = false;
+		List<String> operands = new ArrayList<String>();
+		List<MeasuringCupsPuzzleDistanceIndex> indexes = new ArrayList<MeasuringCupsPuzzleDistanceIndex>();
+		for (String arg : args) {
+			if (arg.startsWith(Config.INDEX_OPTION)) {
+				indexes.add(new MeasuringCupsPuzzleDistanceIndex(Paths.get(arg.substring(Config.INDEX_OPTION.length()))));
+			} else if (arg.startsWith(Config.PARALLELISM_OPTION)) {
+				parallelism = Integer.parseInt(arg.substring(Config.PARALLELISM_OPTION.length()));
+			} else if (arg.startsWith(Config.THREADS_OPTION)) {
+				threads = Integer.parseInt(arg.substring(Config.THREADS_OPTION.length()));
+			} else if (arg.equals(Config.BATCH_OPTION)) {
+				batch = true;
+			} else if (arg.equals(Config.ORDERED_OPTION)) {
+				ordered = true;
+			} else if (arg.equals(Config.PORTFOLIO_OPTION)) {
+				portfolio = Config.DEFAULT_PORTFOLIO;
+			} else if (arg.startsWith(Config.PORTFOLIO_OPTION + "=")) {
+				portfolio = arg.substring(Config.PORTFOLIO_OPTION.length() + 1);
+			} else if (arg.equals(Config.ALL_OPTION)) {
+				all = true;
+			} else if (arg.equals(Config.SYMMETRY_OPTION)) {
+				symmetry = true;
+			} else {
+				operands.add(arg);
+			}
+		}
+		String[] values = operands.toArray(new String[operands.size()]);
+		if (portfolio != null && !indexes.isEmpty()) {
+			throw new MeasuringCupsPuzzleException(Config.INDEX_WITH_PORTFOLIO);
+		}
 
-		Cup startCupA = new Cup(capacityCupA, 0);
-		Cup startCupB = new Cup(capacityCupB, 0);
+		if (batch) {
+			solveBatch(values.length > 0 ? values[0] : null, threads, ordered);
+			return;
+		}
 
-		MeasuringCupsPuzzleState startState = new MeasuringCupsPuzzleState(startCupA, startCupB, null);
+		int cupCount = values.length - 1;
+		if (cupCount == 2 && !fitsInInt(values)) {
+			solveArithmetically(Long.parseLong(values[0]), Long.parseLong(values[1]), Long.parseLong(values[2]));
+			return;
+		}
 
-		Cup goalCupA = new Cup(capacityCupA, goalAmount);
-		Cup goalCupB = new Cup(capacityCupB, 0);
+		MeasuringCupsPuzzleState[] states = createStates(values);
+		MeasuringCupsPuzzle measuringCupsPuzzle = new MeasuringCupsPuzzle(states[0], states[1]);
+		measuringCupsPuzzle.setSymmetryReduction(symmetry);
 
-		MeasuringCupsPuzzleState goalState = new MeasuringCupsPuzzleState(goalCupA, goalCupB, null);
+		if (parallelism > 0) {
+			compareParallel(measuringCupsPuzzle, parallelism);
+			return;
+		}
 
-		MeasuringCupsPuzzle measuringCupsPuzzle = new MeasuringCupsPuzzle(startState, goalState);
+		if (portfolio != null) {
+			solvePortfolio(states, portfolio.split(","), all, symmetry);
+			return;
+		}
 
-		System.out.println(Config.BFS);
-		if (measuringCupsPuzzle.findPathIfExists(Config.BFS)) {
-			System.out.println(measuringCupsPuzzle.retrievePath().toString());
+		Writer out = new BufferedWriter(new OutputStreamWriter(System.out));
+		out.write(Config.BFS + "\n");
+		MeasuringCupsPuzzleDistanceIndex index = findIndex(indexes, states[0]);
+		if (index != null) {
+			if (!index.writePath(index.getSpace().encode(states[1]), out)) {
+				out.write(Config.UNSOLVABLE);
+			}
+			out.write("\n");
 		} else {
-			System.out.println(Config.UNSOLVABLE);
+			writeResult(measuringCupsPuzzle, measuringCupsPuzzle.findPathIfExists(cupCount > 2 ? Config.PACKED_BFS : Config.BFS), out);
 		}
 
-		System.out.println();
+		out.write("\n");
 		
-		System.out.println(Config.DFS);
-		if (measuringCupsPuzzle.findPathIfExists(Config.DFS)) {
+		out.write(Config.DFS + "\n");
+		writeResult(measuringCupsPuzzle, measuringCupsPuzzle.findPathIfExists(cupCount > 2 ? Config.PACKED_DFS : Config.DFS), out);
+		out.flush();
+	}
+
+	/**
+	 * @return the first of the indexes that covers startState, or null if none
+	 *         does
+	 */
+	private static MeasuringCupsPuzzleDistanceIndex findIndex(List<MeasuringCupsPuzzleDistanceIndex> indexes,
+			MeasuringCupsPuzzleState startState) {
+		for (MeasuringCupsPuzzleDistanceIndex index : indexes) {
+			if (index.covers(startState)) {
+				return index;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Write the path found by the last search of a puzzle, or "Unsolvable",
+	 * followed by a new line. The path is streamed by
+	 * {@link MeasuringCupsPuzzle#writePath}, so long paths are never held in
+	 * one String
+	 */
+	private static void writeResult(MeasuringCupsPuzzle measuringCupsPuzzle, boolean solved, Writer out)
+			throws IOException {
+		if (solved) {
+			measuringCupsPuzzle.writePath(out);
+		} else {
+			out.write(Config.UNSOLVABLE);
+		}
+		out.write("\n");
+	}
+
+	/**
+	 * @param values
+	 *            the capacity of each cup followed by the targetVolume
+	 * @return a puzzle from empty cups to targetVolume in cupA and all other
+	 *         cups empty
+	 */
+	static MeasuringCupsPuzzle createPuzzle(String[] values) {
+		MeasuringCupsPuzzleState[] states = createStates(values);
+		return new MeasuringCupsPuzzle(states[0], states[1]);
+	}
+
+	/**
+	 * @param values
+	 *            the capacity of each cup followed by the targetVolume
+	 * @return the start state with all cups empty and the goal state with
+	 *         targetVolume in cupA and all other cups empty
+	 */
+	static MeasuringCupsPuzzleState[] createStates(String[] values) {
+		if (values.length < 3) {
+			throw new MeasuringCupsPuzzleException(Config.TOO_FEW_VALUES);
+		}
+		int cupCount = values.length - 1;
+		int goalAmount = Integer.parseInt(values[cupCount]);
+
+		Cup[] startCups = new Cup[cupCount];
+		Cup[] goalCups = new Cup[cupCount];
+		for (int i = 0; i < cupCount; i++) {
+			int capacity = Integer.parseInt(values[i]);
+			startCups[i] = new Cup(capacity, 0);
+			goalCups[i] = new Cup(capacity, i == 0 ? goalAmount : 0);
+		}
+
+		MeasuringCupsPuzzleState startState = new MeasuringCupsPuzzleState(startCups, null);
+		MeasuringCupsPuzzleState goalState = new MeasuringCupsPuzzleState(goalCups, null);
+
+		return new MeasuringCupsPuzzleState[] { startState, goalState };
+	}
+
+	/**
+	 * Solve one puzzle per line of a file, or of standard input if fileName is
+	 * null, and print the summary of the batch to standard error
+	 */
+	private static void solveBatch(String fileName, int threads, boolean ordered)
+			throws IOException, InterruptedException {
+		MeasuringCupsPuzzleBatch batch = new MeasuringCupsPuzzleBatch(threads, ordered);
+		try (BufferedReader in = new BufferedReader(
+				fileName != null ? new FileReader(fileName) : new InputStreamReader(System.in))) {
+			Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(FileDescriptor.out)));
+			batch.solveAll(in, out);
+		}
+		System.err.println(Config.PUZZLES + "\t" + batch.getPuzzleCount());
+		System.err.println(Config.THROUGHPUT + "\t" + String.format("%.1f", batch.getThroughput()));
+		System.err.println(Config.LATENCY_P50 + "\t" + String.format("%.3f", batch.getLatencyMillis(50)));
+		System.err.println(Config.LATENCY_P99 + "\t" + String.format("%.3f", batch.getLatencyMillis(99)));
+	}
+
+	/**
+	 * Solve the puzzle with PARALLEL_BFS and with the sequential BFS and print
+	 * the path and how much faster the parallel search was
+	 */
+	private static void compareParallel(MeasuringCupsPuzzle measuringCupsPuzzle, int parallelism) {
+		measuringCupsPuzzle.setParallelism(parallelism);
+
+		long parallelStart = System.nanoTime();
+		boolean solved = measuringCupsPuzzle.findPathIfExists(Config.PARALLEL_BFS);
+		long parallelNanos = System.nanoTime() - parallelStart;
+
+		System.out.println(Config.PARALLEL_BFS);
+		if (solved) {
 			System.out.println(measuringCupsPuzzle.retrievePath().toString());
 		} else {
 			System.out.println(Config.UNSOLVABLE);
 		}
+
+		long sequentialStart = System.nanoTime();
+		measuringCupsPuzzle.findPathIfExists(Config.BFS);
+		long sequentialNanos = System.nanoTime() - sequentialStart;
+
+		System.out.println();
+		System.out.println(Config.SEQUENTIAL_TIME + "\t" + sequentialNanos / 1000000);
+		System.out.println(Config.PARALLEL_TIME + "\t" + parallelNanos / 1000000);
+		System.out.println(Config.SPEEDUP + "\t" + String.format("%.2f", (double) sequentialNanos / Math.max(1, parallelNanos)));
+	}
+
+	/**
+	 * Run the algorithms of a portfolio at the same time and print the first
+	 * answer, or every answer if all is true, followed by the wall time and
+	 * status of each search
+	 */
+	private static void solvePortfolio(MeasuringCupsPuzzleState[] states, String[] algorithms, boolean all,
+			boolean symmetry) throws IOException, InterruptedException {
+		MeasuringCupsPuzzlePortfolio measuringCupsPuzzlePortfolio = new MeasuringCupsPuzzlePortfolio(algorithms);
+		measuringCupsPuzzlePortfolio.setSymmetryReduction(symmetry);
+		List<MeasuringCupsPuzzleSolveOutcome> outcomes = measuringCupsPuzzlePortfolio.solve(states[0], states[1],
+				!all);
+		Writer out = new BufferedWriter(new OutputStreamWriter(System.out));
+		for (MeasuringCupsPuzzleSolveOutcome outcome : outcomes) {
+			if (outcome.getStatus() == MeasuringCupsPuzzleSolveOutcome.Status.BUDGET_EXCEEDED) {
+				continue;
+			}
+			out.write(outcome.getStatistics().getAlgorithm() + "\n");
+			if (outcome.getPath() != null) {
+				outcome.getPath().writeTo(out);
+			} else {
+				out.write(Config.UNSOLVABLE);
+			}
+			out.write("\n\n");
+			if (!all) {
+				break;
+			}
+		}
+		for (MeasuringCupsPuzzleSolveOutcome outcome : outcomes) {
+			out.write(outcome.getStatistics().getAlgorithm() + " " + Config.LATENCY_MS + "\t"
+					+ String.format("%.3f", outcome.getStatistics().getWallNanos() / 1e6) + "\t" + outcome.getStatus()
+					+ (outcome.getLimit() != null ? " (" + outcome.getLimit() + ")" : "") + "\n");
+		}
+		out.flush();
+	}
+
+	/**
+	 * @param args
+	 *            the command line arguments
+	 * @return true if every argument is an int and false otherwise
+	 */
+	private static boolean fitsInInt(String[] args) {
+		for (String arg : args) {
+			if (Long.parseLong(arg) > Integer.MAX_VALUE) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Print the two-cup solution of {@link MeasuringCupsPuzzleBezout} one
+	 * state at a time, or "Unsolvable"
+	 */
+	private static void solveArithmetically(long capacityCupA, long capacityCupB, long goalAmount)
+			throws IOException {
+		System.out.println(Config.BEZOUT);
+		if (!MeasuringCupsPuzzleBezout.isSolvable(capacityCupA, capacityCupB, goalAmount)) {
+			System.out.println(Config.UNSOLVABLE);
+			return;
+		}
+		System.out.flush();
+		// write to the file descriptor directly: System.out swallows errors,
+		// so a closed pipe would never stop an endless stream of moves
+		Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(FileDescriptor.out)));
+		new MeasuringCupsPuzzleBezout(capacityCupA, capacityCupB, goalAmount).writeTo(out);
+		out.write('\n');
+		out.flush();
 	}
 }